@@ -0,0 +1,70 @@
+package at.lmk.benchmark;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import at.lmk.benchmark.Fixtures.ChartPage;
+import at.lmk.benchmark.Fixtures.CountingOutputStream;
+import at.lmk.webapp.Page;
+import at.lmk.webapp.RenderContext;
+import at.lmk.webapp.components.charts.AreaChart;
+import at.lmk.webapp.components.charts.PieChart;
+
+/**
+ * Renders the chart pages, including the generated chart script
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChartBenchmark {
+
+	@Param({ "7", "10000" })
+	private int entries;
+
+	private RenderContext context;
+	private Page areaChart;
+	private Page pieChart;
+
+	@Setup
+	public void setup() throws ServletException {
+		context = Fixtures.context();
+		Map<String, Double> map = Fixtures.entries(entries);
+		areaChart = new ChartPage(new AreaChart("Titel", "idAreaChart", map, 0, 150));
+		areaChart.init();
+		pieChart = new ChartPage(new PieChart("Pie", "pieId", map));
+		pieChart.init();
+	}
+
+	@Benchmark
+	public long areaChart() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		areaChart.render(context, out);
+		return out.count;
+	}
+
+	@Benchmark
+	public long pieChart() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		pieChart.render(context, out);
+		return out.count;
+	}
+
+}
@@ -0,0 +1,160 @@
+package at.lmk.benchmark;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import at.lmk.db.Order;
+import at.lmk.db.entities.User;
+import at.lmk.webapp.Page;
+import at.lmk.webapp.RenderContext;
+import at.lmk.webapp.ScriptPage;
+import at.lmk.webapp.components.charts.Chart;
+import at.lmk.webapp.elements.TableDataSource;
+import j2html.tags.DomContent;
+
+/**
+ * Test data and page wrappers shared by the benchmarks, nothing in here touches
+ * the database or a servlet container
+ */
+class Fixtures {
+
+	static RenderContext context() {
+		User user = new User();
+		user.setId(1);
+		user.setEmail("lisa@owl.at");
+		user.setFirstName("Lisa");
+		user.setLastName("Kritzinger");
+		return new RenderContext(null, user);
+	}
+
+	/**
+	 * Users with a fixed fake password hash, hashing with BCrypt would make the
+	 * setup of large tables take hours
+	 */
+	static List<User> users(int count) {
+		List<User> users = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			User user = new User();
+			user.setId(i);
+			user.setEmail("user" + i + "@owl.at");
+			user.setFirstName("First" + i);
+			user.setLastName("Last" + i);
+			user.setPassword("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z2Yz8fHhXG6Kc7wGmXqKzQ6m");
+			users.add(user);
+		}
+		return users;
+	}
+
+	static Map<String, Double> entries(int count) {
+		Map<String, Double> entries = new LinkedHashMap<>();
+		for (int i = 0; i < count; i++)
+			entries.put(String.valueOf(2000 + i), Double.valueOf(i % 150));
+		return entries;
+	}
+
+	/**
+	 * Serves the users from memory. The order is ignored, sorting is left to the
+	 * database and would only measure this fake.
+	 */
+	static class UserDataSource implements TableDataSource<User> {
+
+		private final List<User> users;
+
+		UserDataSource(List<User> users) {
+			this.users = users;
+		}
+
+		@Override
+		public long count(String search, Collection<String> fields) {
+			return search(search).size();
+		}
+
+		@Override
+		public List<User> fetch(int offset, int limit, Order order, String search, Collection<String> fields) {
+			List<User> matches = search(search);
+			int from = Math.min(offset, matches.size());
+			return matches.subList(from, Math.min(from + limit, matches.size()));
+		}
+
+		private List<User> search(String search) {
+			if (search == null || search.isEmpty())
+				return users;
+			List<User> matches = new ArrayList<>();
+			for (User user : users)
+				if (user.getEmail().contains(search) || user.getFirstName().contains(search)
+						|| user.getLastName().contains(search))
+					matches.add(user);
+			return matches;
+		}
+
+	}
+
+	/**
+	 * A page whose contents are built by the supplier on every render, like the
+	 * getContents of a real page
+	 */
+	static class ContentPage extends Page {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient Supplier<DomContent> contents;
+
+		ContentPage(Supplier<DomContent> contents) {
+			this.contents = contents;
+		}
+
+		@Override
+		public DomContent getContents(RenderContext context) {
+			return contents.get();
+		}
+
+	}
+
+	static class ChartPage extends ScriptPage {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient Chart chart;
+
+		ChartPage(Chart chart) {
+			this.chart = chart;
+		}
+
+		@Override
+		public DomContent getContents(RenderContext context) {
+			return chart.render();
+		}
+
+		@Override
+		public DomContent getScript(RenderContext context) {
+			return chart.getChartScript();
+		}
+
+	}
+
+	/**
+	 * Drops the rendered page, only counting the bytes so the rendering cannot be
+	 * optimised away
+	 */
+	static class CountingOutputStream extends OutputStream {
+
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+
+	}
+
+}
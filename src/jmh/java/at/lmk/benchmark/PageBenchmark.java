@@ -0,0 +1,73 @@
+package at.lmk.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import at.lmk.benchmark.Fixtures.ContentPage;
+import at.lmk.benchmark.Fixtures.CountingOutputStream;
+import at.lmk.webapp.Page;
+import at.lmk.webapp.RenderContext;
+import at.lmk.webapp.pages.Index;
+
+/**
+ * Renders the Index page and the page chrome without any contents
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageBenchmark {
+
+	private RenderContext context;
+	private Page index;
+	private Page chrome;
+
+	@Setup
+	public void setup() throws ServletException {
+		context = Fixtures.context();
+		index = new Index();
+		index.init();
+		chrome = new ContentPage(() -> null);
+		chrome.init();
+	}
+
+	@Benchmark
+	public long index() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		index.render(context, out);
+		return out.count;
+	}
+
+	@Benchmark
+	public long chrome() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		chrome.render(context, out);
+		return out.count;
+	}
+
+	/**
+	 * Building the chrome template, done once per servlet at init
+	 */
+	@Benchmark
+	public Page compileChrome() throws ServletException {
+		Page page = new ContentPage(() -> null);
+		page.init();
+		return page;
+	}
+
+}
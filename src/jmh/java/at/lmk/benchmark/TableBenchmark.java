@@ -0,0 +1,93 @@
+package at.lmk.benchmark;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import at.lmk.benchmark.Fixtures.ContentPage;
+import at.lmk.benchmark.Fixtures.CountingOutputStream;
+import at.lmk.benchmark.Fixtures.UserDataSource;
+import at.lmk.webapp.Page;
+import at.lmk.webapp.RenderContext;
+import at.lmk.webapp.pages.Tables;
+
+/**
+ * Renders the user table of the Tables page and answers its data requests with
+ * in-memory users instead of a database query
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TableBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	private int rows;
+
+	private RenderContext context;
+	private UserDataSource source;
+	private Page page;
+	private Map<String, String> firstPage;
+	private Map<String, String> search;
+
+	@Setup
+	public void setup() throws ServletException {
+		context = Fixtures.context();
+		source = new UserDataSource(Fixtures.users(rows));
+		page = new ContentPage(() -> Tables.createTable(source).render());
+		page.init();
+		firstPage = new HashMap<>();
+		firstPage.put("draw", "1");
+		firstPage.put("start", "0");
+		firstPage.put("length", "10");
+		firstPage.put("order[0][column]", "0");
+		firstPage.put("order[0][dir]", "asc");
+		search = new HashMap<>(firstPage);
+		search.put("search[value]", "7");
+	}
+
+	@Benchmark
+	public long tables() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		page.render(context, out);
+		return out.count;
+	}
+
+	/**
+	 * The JSON answer of TablesData for the first page of rows
+	 */
+	@Benchmark
+	public int writeData() throws IOException {
+		StringBuilder out = new StringBuilder();
+		Tables.createTable(source).writeData(firstPage::get, out);
+		return out.length();
+	}
+
+	/**
+	 * Like {@link #writeData()}, but searching, so both counts are loaded
+	 */
+	@Benchmark
+	public int writeDataSearch() throws IOException {
+		StringBuilder out = new StringBuilder();
+		Tables.createTable(source).writeData(search::get, out);
+		return out.length();
+	}
+
+}
@@ -0,0 +1,169 @@
+package at.lmk.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+
+import at.lmk.util.Metrics;
+
+/**
+ * HikariCP pool for the connection settings of hibernate.cfg.xml, handed to
+ * Hibernate as its connection provider. Size and timeouts are read from owl.pool.*
+ * system properties.
+ */
+class ConnectionPool {
+
+	private static HikariDataSource dataSource;
+
+	private static final LongAdder acquired = new LongAdder();
+	private static final LongAdder acquireNanos = new LongAdder();
+	private static final LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0);
+	private static final LongAdder timeouts = new LongAdder();
+	private static final LongAdder usageMillis = new LongAdder();
+
+	/**
+	 * Lets Hibernate take its connections from the pool, unless the
+	 * configuration already names a data source or connection provider
+	 */
+	static synchronized void configure(Configuration configuration) {
+		Properties settings = configuration.getProperties();
+		if (dataSource != null || settings.get(AvailableSettings.DATASOURCE) != null
+				|| settings.get(AvailableSettings.CONNECTION_PROVIDER) != null)
+			return;
+		HikariConfig config = new HikariConfig();
+		config.setPoolName("owl-db");
+		config.setJdbcUrl(settings.getProperty(AvailableSettings.URL));
+		config.setUsername(settings.getProperty(AvailableSettings.USER));
+		config.setPassword(settings.getProperty(AvailableSettings.PASS));
+		// otherwise MySQL sends the statements of a batch one by one and reads
+		// whole results ignoring the fetch size
+		if (config.getJdbcUrl() != null && config.getJdbcUrl().startsWith("jdbc:mysql:")) {
+			config.addDataSourceProperty("rewriteBatchedStatements", "true");
+			config.addDataSourceProperty("useCursorFetch", "true");
+		}
+		String driver = settings.getProperty(AvailableSettings.DRIVER);
+		if (driver != null)
+			config.setDriverClassName(driver);
+		config.setMaximumPoolSize(maximumSize());
+		config.setMinimumIdle(Integer.getInteger("owl.pool.minimumIdle", config.getMaximumPoolSize()));
+		config.setConnectionTimeout(Long.getLong("owl.pool.connectionTimeoutMillis", 30_000));
+		config.setIdleTimeout(Long.getLong("owl.pool.idleTimeoutMillis", 600_000));
+		config.setMaxLifetime(Long.getLong("owl.pool.maxLifetimeMillis", 1_800_000));
+		config.setLeakDetectionThreshold(Long.getLong("owl.pool.leakDetectionMillis", 0));
+		config.setMetricsTrackerFactory((poolName, poolStats) -> new IMetricsTracker() {
+
+			@Override
+			public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+				acquired.increment();
+				acquireNanos.add(elapsedAcquiredNanos);
+				maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+			}
+
+			@Override
+			public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+				usageMillis.add(elapsedBorrowedMillis);
+			}
+
+			@Override
+			public void recordConnectionTimeout() {
+				timeouts.increment();
+			}
+
+		});
+		dataSource = new HikariDataSource(config);
+		// a provider instead of the data source, Hibernate would pass the
+		// credentials of hibernate.cfg.xml on to the pool, which rejects them
+		settings.put(AvailableSettings.CONNECTION_PROVIDER, new PooledConnectionProvider(dataSource));
+		registerMetrics(dataSource.getHikariPoolMXBean());
+	}
+
+	/**
+	 * @return the maximum number of connections, owl.pool.maximumSize
+	 */
+	static int maximumSize() {
+		return Integer.getInteger("owl.pool.maximumSize", 10);
+	}
+
+	private static void registerMetrics(HikariPoolMXBean pool) {
+		Metrics.register("pool.active", pool::getActiveConnections);
+		Metrics.register("pool.idle", pool::getIdleConnections);
+		Metrics.register("pool.pending", pool::getThreadsAwaitingConnection);
+		Metrics.register("pool.total", pool::getTotalConnections);
+		Metrics.register("pool.acquired", acquired::sum);
+		Metrics.register("pool.timeouts", timeouts::sum);
+		Metrics.register("pool.meanAcquireMillis", () -> mean(acquireNanos.sum() / 1e6));
+		Metrics.register("pool.maxAcquireMillis", () -> TimeUnit.NANOSECONDS.toMillis(maxAcquireNanos.get()));
+		Metrics.register("pool.meanUsageMillis", () -> mean(usageMillis.sum()));
+	}
+
+	private static double mean(double total) {
+		long count = acquired.sum();
+		return count == 0 ? 0 : total / count;
+	}
+
+	static synchronized void close() {
+		if (dataSource != null)
+			dataSource.close();
+		dataSource = null;
+	}
+
+	/**
+	 * Hands out the connections of the pool, closing a connection returns it
+	 */
+	private static class PooledConnectionProvider implements ConnectionProvider {
+
+		private static final long serialVersionUID = 6190402839547325409L;
+
+		private final transient DataSource dataSource;
+
+		private PooledConnectionProvider(DataSource dataSource) {
+			this.dataSource = dataSource;
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			return dataSource.getConnection();
+		}
+
+		@Override
+		public void closeConnection(Connection connection) throws SQLException {
+			connection.close();
+		}
+
+		@Override
+		public boolean supportsAggressiveRelease() {
+			return false;
+		}
+
+		@Override
+		public boolean isUnwrappableAs(@SuppressWarnings("rawtypes") Class unwrapType) {
+			return unwrapType.isInstance(this) || unwrapType.isInstance(dataSource);
+		}
+
+		@Override
+		public <T> T unwrap(Class<T> unwrapType) {
+			if (unwrapType.isInstance(this))
+				return unwrapType.cast(this);
+			if (unwrapType.isInstance(dataSource))
+				return unwrapType.cast(dataSource);
+			throw new UnknownUnwrapTypeException(unwrapType);
+		}
+
+	}
+
+}
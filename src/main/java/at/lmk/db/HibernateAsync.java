@@ -0,0 +1,183 @@
+package at.lmk.db;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import at.lmk.util.Metrics;
+import at.lmk.util.Threads;
+
+/**
+ * The reads of {@link HibernateUtil} returning futures, so independent queries
+ * of a page run in parallel. At most as many calls run at once as the pool has
+ * connections, on virtual threads where the JVM has them. Every call runs in
+ * a {@link UnitOfWork} of its own, outside of the one of the caller, so a
+ * failing query completes the future exceptionally instead of returning null
+ * or 0. The caller holds no connection while it waits, unless its unit of work
+ * has begun writing, see {@link #supply(Supplier, long, TimeUnit)}.
+ *
+ * @see HibernateUtil#async()
+ */
+public class HibernateAsync {
+
+	private static HibernateAsync instance;
+
+	private static final long TIMEOUT = Long.getLong("owl.db.asyncTimeoutMillis", 10_000);
+
+	private final ExecutorService executor;
+
+	/**
+	 * Limits the virtual threads to the pool size, null if the executor is
+	 * already bounded
+	 */
+	private final Semaphore permits;
+
+	private final AtomicInteger running = new AtomicInteger();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder cancelled = new LongAdder();
+
+	private HibernateAsync() {
+		int threads = ConnectionPool.maximumSize();
+		ExecutorService virtual = Threads.newVirtualThreadPerTaskExecutor().orElse(null);
+		if (virtual != null) {
+			executor = virtual;
+			permits = new Semaphore(threads);
+		} else {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), Threads.daemon("owl-db"));
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+			permits = null;
+		}
+		Metrics.register("db.async.running", running::get);
+		Metrics.register("db.async.timeouts", timeouts::sum);
+		Metrics.register("db.async.cancelled", cancelled::sum);
+	}
+
+	/**
+	 * @return the instance, its executor is started with the first call
+	 */
+	static synchronized HibernateAsync getInstance() {
+		if (instance == null)
+			instance = new HibernateAsync();
+		return instance;
+	}
+
+	public <T> CompletableFuture<List<T>> list(Class<T> type) {
+		return supply(() -> HibernateUtil.list(type));
+	}
+
+	public <T> CompletableFuture<List<T>> list(Class<T> type, int offset, int limit, Order order) {
+		return supply(() -> HibernateUtil.list(type, offset, limit, order));
+	}
+
+	public <T> CompletableFuture<List<T>> page(Class<T> type, long afterId, int limit) {
+		return supply(() -> HibernateUtil.page(type, afterId, limit));
+	}
+
+	public <T> CompletableFuture<List<T>> search(Class<T> type, int offset, int limit, Order order, String search,
+			Collection<String> searchFields) {
+		return supply(() -> HibernateUtil.search(type, offset, limit, order, search, searchFields));
+	}
+
+	public <T> CompletableFuture<List<Object[]>> project(Class<T> type, List<String> fields, int offset, int limit,
+			Order order, String search, Collection<String> searchFields) {
+		return supply(() -> HibernateUtil.project(type, fields, offset, limit, order, search, searchFields));
+	}
+
+	public <T> CompletableFuture<Long> count(Class<T> type, String search, Collection<String> searchFields) {
+		return supply(() -> HibernateUtil.count(type, search, searchFields));
+	}
+
+	public <T> CompletableFuture<T> find(Class<T> type, String queryName, Map<String, ?> parameters) {
+		return supply(() -> HibernateUtil.find(type, queryName, parameters));
+	}
+
+	public <T> CompletableFuture<T> get(Class<T> type, long id) {
+		return supply(() -> HibernateUtil.get(type, id));
+	}
+
+	/**
+	 * Runs any database access with the default timeout of
+	 * owl.db.asyncTimeoutMillis
+	 */
+	public <R> CompletableFuture<R> supply(Supplier<R> supplier) {
+		return supply(supplier, TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs any database access. A future that times out or is cancelled
+	 * interrupts the call, if it waits for a connection it gives up, a running
+	 * statement is not aborted. A caller whose unit of work has begun writing
+	 * already holds a connection, waiting for others could drain the pool, so
+	 * the call runs at once in its unit of work instead. Writes of the supplier
+	 * share one transaction that is committed when it returns.
+	 *
+	 * @param timeout time until the future completes with a
+	 *                {@link TimeoutException}
+	 */
+	public <R> CompletableFuture<R> supply(Supplier<R> supplier, long timeout, TimeUnit unit) {
+		CompletableFuture<R> result = new CompletableFuture<>();
+		UnitOfWork unitOfWork = UnitOfWork.current();
+		if (unitOfWork != null && unitOfWork.isWriting()) {
+			try {
+				result.complete(supplier.get());
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+			return result;
+		}
+		Future<?> task = executor.submit(() -> {
+			if (result.isDone())
+				return;
+			try {
+				if (permits != null)
+					permits.acquire();
+				try (UnitOfWork work = UnitOfWork.begin()) {
+					running.incrementAndGet();
+					result.complete(supplier.get());
+				} finally {
+					running.decrementAndGet();
+					if (permits != null)
+						permits.release();
+				}
+			} catch (InterruptedException e) {
+				result.cancel(false);
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		result.orTimeout(timeout, unit).whenComplete((r, e) -> {
+			if (e instanceof TimeoutException)
+				timeouts.increment();
+			else if (e instanceof CancellationException)
+				cancelled.increment();
+			else
+				return;
+			task.cancel(true);
+		});
+		return result;
+	}
+
+	/**
+	 * Stops the executor, the next call starts a new one
+	 */
+	static synchronized void shutdown() {
+		if (instance != null)
+			instance.executor.shutdownNow();
+		instance = null;
+	}
+
+}
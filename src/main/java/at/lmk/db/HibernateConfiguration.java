@@ -2,8 +2,31 @@ package at.lmk.db;
 
 import java.io.File;
 
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.cfg.Configuration;
 
 public class HibernateConfiguration {
 	static final Configuration configuration = new Configuration().configure(new File("hibernate.cfg.xml"));
+
+	/**
+	 * Number of statements sent in one JDBC batch, also the number of entities
+	 * after which bulk inserts flush and clear the session
+	 */
+	static final int BATCH_SIZE = Integer.getInteger("owl.jdbc.batchSize", 50);
+
+	static {
+		ConnectionPool.configure(configuration);
+		SecondLevelCache.configure(configuration);
+		setDefault(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(BATCH_SIZE));
+		setDefault(AvailableSettings.ORDER_INSERTS, "true");
+		setDefault(AvailableSettings.ORDER_UPDATES, "true");
+	}
+
+	/**
+	 * Sets a property unless hibernate.cfg.xml already does
+	 */
+	private static void setDefault(String property, String value) {
+		if (configuration.getProperty(property) == null)
+			configuration.setProperty(property, value);
+	}
 }
@@ -1,14 +1,34 @@
 package at.lmk.db;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.EntityType;
+
+import org.hibernate.Cache;
+import org.hibernate.FlushMode;
 import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
+import org.hibernate.jdbc.Work;
+import org.hibernate.query.Query;
 
 import at.lmk.db.entities.User;
 import at.lmk.db.entities.UserSession;
@@ -22,37 +42,243 @@ public class HibernateUtil {
 
 	private static final SessionFactory sessionFactory = HibernateConfiguration.configuration.buildSessionFactory();
 
+	static {
+		SecondLevelCache.registerMetrics(sessionFactory);
+	}
+
 	public static SessionFactory getSessionFactory() {
 		return sessionFactory;
 	}
 
+	/**
+	 * @return the reads of this class returning futures, for queries that can
+	 *         run in parallel
+	 */
+	public static HibernateAsync async() {
+		return HibernateAsync.getInstance();
+	}
+
 	public static void shutdown() {
+		HibernateAsync.shutdown();
 		getSessionFactory().close();
+		ConnectionPool.close();
 	}
 
 	public static <T> long insert(T entity) {
 		return performAction(s -> (long) s.save(entity));
 	}
 
+	/**
+	 * Inserts the entities in JDBC batches, the session is flushed and cleared
+	 * after every batch so memory use does not grow with the number of entities
+	 */
 	public static <T> void insertAll(Collection<T> entities) {
 		performAction(s -> {
-			entities.forEach(e -> s.save(e));
+			int count = 0;
+			for (T e : entities) {
+				s.save(e);
+				if (++count % HibernateConfiguration.BATCH_SIZE == 0) {
+					s.flush();
+					s.clear();
+				}
+			}
 			return null;
 		});
 	}
 
 	@SuppressWarnings("unchecked")
 	public static <T> List<T> list(Class<T> type) {
-		return performAction(s -> s.createQuery("From " + type.getName()).list());
+		return performRead(s -> s.createQuery("From " + type.getName()).list());
+	}
+
+	/**
+	 * Loads one page of entities
+	 *
+	 * @param type   the entity class
+	 * @param offset index of the first result
+	 * @param limit  maximum number of results
+	 * @param order  sort order, null for unsorted
+	 * @return the entities of the requested page
+	 */
+	public static <T> List<T> list(Class<T> type, int offset, int limit, Order order) {
+		return search(type, offset, limit, order, null, Collections.emptyList());
+	}
+
+	/**
+	 * Loads the entities following the given id in id order. Unlike an offset
+	 * the id is found through the primary key index, so every page costs the
+	 * same.
+	 *
+	 * @param type    the entity class
+	 * @param afterId id of the last entity of the previous page, use a value
+	 *                below all ids for the first page
+	 * @param limit   maximum number of results
+	 * @return the entities of the page, fewer than limit on the last page
+	 */
+	public static <T> List<T> page(Class<T> type, long afterId, int limit) {
+		return performRead(s -> {
+			EntityType<T> entity = s.getMetamodel().entity(type);
+			String id = entity.getId(entity.getIdType().getJavaType()).getName();
+			CriteriaBuilder cb = s.getCriteriaBuilder();
+			CriteriaQuery<T> query = cb.createQuery(type);
+			Root<T> root = query.from(type);
+			query.select(root).where(cb.gt(root.get(id), afterId)).orderBy(cb.asc(root.get(id)));
+			return s.createQuery(query).setMaxResults(limit).list();
+		});
+	}
+
+	/**
+	 * Streams all entities of a type from a forward only cursor of a stateless
+	 * session. The stream holds a connection until it is closed, so it must be
+	 * used in a try-with-resources block.
+	 *
+	 * @param type      the entity class
+	 * @param fetchSize number of rows fetched per round trip
+	 * @return the detached entities, read while the stream is consumed
+	 */
+	public static <T> Stream<T> stream(Class<T> type, int fetchSize) {
+		StatelessSession session = HibernateUtil.getSessionFactory().openStatelessSession();
+		try {
+			Transaction transaction = session.beginTransaction();
+			return session.createQuery("From " + type.getName(), type).setFetchSize(fetchSize).setReadOnly(true)
+					.stream().onClose(() -> {
+						try {
+							if (transaction.isActive())
+								transaction.commit();
+						} finally {
+							session.close();
+						}
+					});
+		} catch (RuntimeException e) {
+			session.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Loads one page of entities whose search fields contain the search text
+	 *
+	 * @param type         the entity class
+	 * @param offset       index of the first result
+	 * @param limit        maximum number of results
+	 * @param order        sort order, null for unsorted
+	 * @param search       text to search for, null or empty for all entities
+	 * @param searchFields the fields that are searched, case insensitive
+	 * @return the entities of the requested page
+	 */
+	public static <T> List<T> search(Class<T> type, int offset, int limit, Order order, String search,
+			Collection<String> searchFields) {
+		return performRead(s -> {
+			CriteriaBuilder cb = s.getCriteriaBuilder();
+			CriteriaQuery<T> query = cb.createQuery(type);
+			Root<T> root = query.from(type);
+			query.select(root).where(matches(cb, root, search, searchFields));
+			if (order != null)
+				query.orderBy(order.isAscending() ? cb.asc(root.get(order.getField()))
+						: cb.desc(root.get(order.getField())));
+			return s.createQuery(query).setFirstResult(offset).setMaxResults(limit).list();
+		});
+	}
+
+	/**
+	 * Like {@link #search(Class, int, int, Order, String, Collection)}, but
+	 * selects only the given fields. The rows are plain arrays, no entities are
+	 * built or kept in the session.
+	 *
+	 * @param fields the fields to load
+	 * @return one array per entity holding the values of the fields in order
+	 */
+	public static <T> List<Object[]> project(Class<T> type, List<String> fields, int offset, int limit, Order order,
+			String search, Collection<String> searchFields) {
+		return performRead(s -> {
+			CriteriaBuilder cb = s.getCriteriaBuilder();
+			// a Tuple query, an Object[] query returns bare values for a single field
+			CriteriaQuery<Tuple> query = cb.createTupleQuery();
+			Root<T> root = query.from(type);
+			List<Selection<?>> selections = new ArrayList<>(fields.size());
+			for (String field : fields)
+				selections.add(root.get(field));
+			query.multiselect(selections).where(matches(cb, root, search, searchFields));
+			if (order != null)
+				query.orderBy(order.isAscending() ? cb.asc(root.get(order.getField()))
+						: cb.desc(root.get(order.getField())));
+			List<Tuple> tuples = s.createQuery(query).setFirstResult(offset).setMaxResults(limit).list();
+			List<Object[]> rows = new ArrayList<>(tuples.size());
+			for (Tuple tuple : tuples)
+				rows.add(tuple.toArray());
+			return rows;
+		});
+	}
+
+	/**
+	 * Counts the entities whose search fields contain the search text
+	 *
+	 * @see #search(Class, int, int, Order, String, Collection)
+	 */
+	public static <T> long count(Class<T> type, String search, Collection<String> searchFields) {
+		Long count = performRead(s -> {
+			CriteriaBuilder cb = s.getCriteriaBuilder();
+			CriteriaQuery<Long> query = cb.createQuery(Long.class);
+			Root<T> root = query.from(type);
+			query.select(cb.count(root)).where(matches(cb, root, search, searchFields));
+			return s.createQuery(query).getSingleResult();
+		});
+		return count == null ? 0 : count;
+	}
+
+	private static Predicate matches(CriteriaBuilder cb, Root<?> root, String search, Collection<String> fields) {
+		if (search == null || search.isEmpty() || fields.isEmpty())
+			return cb.conjunction();
+		String pattern = "%" + search.toLowerCase(Locale.ROOT).replace("\\", "\\\\").replace("%", "\\%")
+				.replace("_", "\\_") + "%";
+		return cb.or(fields.stream()
+				.map(f -> cb.like(cb.lower(root.get(f).as(String.class)), pattern, '\\'))
+				.toArray(Predicate[]::new));
+	}
+
+	/**
+	 * Runs a named query with one parameter and returns its first result
+	 *
+	 * @param type      the entity class
+	 * @param queryName the name of the query
+	 * @param parameter the name of the query parameter
+	 * @param value     the value of the query parameter
+	 * @return the entity, null if there is none
+	 */
+	public static <T> T find(Class<T> type, String queryName, String parameter, Object value) {
+		return find(type, queryName, Collections.singletonMap(parameter, value));
+	}
+
+	/**
+	 * Runs a named query and returns its first result
+	 *
+	 * @param type       the entity class
+	 * @param queryName  the name of the query
+	 * @param parameters the query parameters by name
+	 * @return the entity, null if there is none
+	 */
+	public static <T> T find(Class<T> type, String queryName, Map<String, ?> parameters) {
+		return performRead(s -> {
+			Query<T> query = s.createNamedQuery(queryName, type);
+			parameters.forEach(query::setParameter);
+			return query.setMaxResults(1).uniqueResult();
+		});
 	}
 
 	public static <T> T get(Class<T> type, long id) {
-		return performAction(s -> s.get(type, id));
+		// a hit in the second-level cache needs neither a transaction nor a
+		// connection
+		if (sessionFactory.getCache().contains(type, id))
+			return perform(s -> s.get(type, id), true, false);
+		return performRead(s -> s.get(type, id));
 	}
 
 	public static <T> void update(long entityId, Class<T> type, Consumer<T> consumer) {
 		performAction(s -> {
 			T t = s.get(type, entityId);
+			// loaded read-only earlier in the same unit of work
+			if (s.isReadOnly(t))
+				s.setReadOnly(t, false);
 			consumer.accept(t);
 			s.update(t);
 			return null;
@@ -61,6 +287,10 @@ public class HibernateUtil {
 
 	public static <T> void update(T entity) {
 		performAction(s -> {
+			// reattached as a whole, a read-only copy of a unit of work would ignore
+			// the changes
+			if (s.contains(entity))
+				s.evict(entity);
 			s.update(entity);
 			return null;
 		});
@@ -81,14 +311,172 @@ public class HibernateUtil {
 		});
 	}
 
-	private static <R> R performAction(Function<Session, R> function) {
+	/**
+	 * Runs plain JDBC work on a connection of the session factory, inside a
+	 * transaction
+	 *
+	 * @return false if the work failed and its transaction was rolled back
+	 */
+	public static boolean doWork(Work work) {
+		return performAction(s -> {
+			s.doWork(work);
+			return Boolean.TRUE;
+		}) != null;
+	}
+
+	/**
+	 * Inserts the entities through a stateless session, without a persistence
+	 * context or cascades. Hibernate 5.4 sends every insert of a stateless
+	 * session on its own, hibernate.jdbc.batch_size does not batch them. For
+	 * JDBC batches use {@link #insertAll(Collection)}.
+	 *
+	 * @throws HibernateException if an insert fails, none of the entities are
+	 *                            written then
+	 */
+	public static <T> void bulkInsert(Collection<T> entities) {
+		performStateless(s -> {
+			entities.forEach(s::insert);
+			return null;
+		});
+		evict(entities);
+	}
+
+	/**
+	 * Updates the entities through a stateless session, every entity is written
+	 * without dirty checking
+	 *
+	 * @throws HibernateException if an update fails, none of the entities are
+	 *                            written then
+	 */
+	public static <T> void bulkUpdate(Collection<T> entities) {
+		performStateless(s -> {
+			entities.forEach(s::update);
+			return null;
+		});
+		evict(entities);
+	}
+
+	/**
+	 * Deletes the entities through a stateless session
+	 *
+	 * @throws HibernateException if a delete fails, none of the entities are
+	 *                            deleted then
+	 */
+	public static <T> void bulkDelete(Collection<T> entities) {
+		performStateless(s -> {
+			entities.forEach(s::delete);
+			return null;
+		});
+		evict(entities);
+	}
+
+	/**
+	 * Stateless sessions bypass the second-level cache, so the regions of the
+	 * written types and the cached query results are dropped afterwards
+	 */
+	private static void evict(Collection<?> entities) {
+		Cache cache = getSessionFactory().getCache();
+		entities.stream().map(Object::getClass).distinct().forEach(cache::evictEntityData);
+		cache.evictQueryRegions();
+	}
+
+	/**
+	 * Drops one entity from the second-level cache after it was written with
+	 * plain JDBC
+	 */
+	public static void evict(Class<?> type, long id) {
+		getSessionFactory().getCache().evictEntityData(type, id);
+	}
+
+	/**
+	 * Passes all entities of a type to the consumer one by one, reading them
+	 * through a forward only cursor of a stateless session. The entities are
+	 * detached and not kept after the consumer returns.
+	 *
+	 * @param type      the entity class
+	 * @param fetchSize number of rows fetched per round trip
+	 * @param consumer  called for every entity
+	 * @return the number of entities read
+	 * @throws HibernateException if reading fails, exceptions of the consumer are
+	 *                            passed on as well
+	 */
+	public static <T> long scroll(Class<T> type, int fetchSize, Consumer<T> consumer) {
+		return performStateless(s -> {
+			long read = 0;
+			try (ScrollableResults results = s.createQuery("From " + type.getName(), type).setFetchSize(fetchSize)
+					.setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY)) {
+				while (results.next()) {
+					consumer.accept(type.cast(results.get(0)));
+					read++;
+				}
+			}
+			return read;
+		});
+	}
+
+	/**
+	 * Runs the function in a transaction of a stateless session. Unlike
+	 * {@link #performAction(Function)} a failure is not swallowed, a bulk write
+	 * that silently did nothing would look like it succeeded.
+	 *
+	 * @throws RuntimeException thrown by the function or the commit, after the
+	 *                          transaction was rolled back
+	 */
+	private static <R> R performStateless(Function<StatelessSession, R> function) {
+		StatelessSession session = HibernateUtil.getSessionFactory().openStatelessSession();
+		Transaction transaction = null;
+		try {
+			transaction = session.beginTransaction();
+			R result = function.apply(session);
+			transaction.commit();
+			return result;
+		} catch (RuntimeException e) {
+			if (transaction != null && transaction.isActive())
+				transaction.rollback();
+			throw e;
+		} finally {
+			session.close();
+		}
+	}
+
+	static <R> R performAction(Function<Session, R> function) {
+		return perform(function, false, true);
+	}
+
+	/**
+	 * Like {@link #performAction(Function)} for functions that only read. Loaded
+	 * entities are read-only without snapshots for dirty checking, the session is
+	 * never flushed and the JDBC connection is marked read-only, so the driver or
+	 * pool may send it to a replica.
+	 */
+	static <R> R performRead(Function<Session, R> function) {
+		return perform(function, true, true);
+	}
+
+	/**
+	 * @param transactional false only for reads served from the second-level
+	 *                      cache, a miss then runs in auto-commit mode
+	 */
+	private static <R> R perform(Function<Session, R> function, boolean readOnly, boolean transactional) {
+		UnitOfWork unitOfWork = UnitOfWork.current();
+		if (unitOfWork != null)
+			return perform(unitOfWork, function, readOnly, transactional);
 		Session session = HibernateUtil.getSessionFactory().openSession();
 		Transaction transaction = null;
 		R result = null;
 		try {
-			transaction = session.beginTransaction();
+			if (readOnly) {
+				session.setDefaultReadOnly(true);
+				session.setHibernateFlushMode(FlushMode.MANUAL);
+				// before the transaction starts, the pool resets it on release
+				if (transactional)
+					session.doWork(connection -> connection.setReadOnly(true));
+			}
+			if (transactional)
+				transaction = session.beginTransaction();
 			result = function.apply(session);
-			transaction.commit();
+			if (transaction != null)
+				transaction.commit();
 		} catch (HibernateException e) {
 			e.printStackTrace();
 		} finally {
@@ -97,4 +485,44 @@ public class HibernateUtil {
 		return result;
 	}
 
+	/**
+	 * Runs the function in the session of the unit of work. Reads before the
+	 * first write run in their own read-only transaction, later reads share the
+	 * connection of the writes and cannot mark it read-only. Writes are flushed
+	 * at once and committed when the unit of work ends. Unlike outside of a unit
+	 * of work, a failure is thrown, and the unit of work is rolled back.
+	 */
+	private static <R> R perform(UnitOfWork unitOfWork, Function<Session, R> function, boolean readOnly,
+			boolean transactional) {
+		Session session = unitOfWork.getSession();
+		boolean defaultReadOnly = session.isDefaultReadOnly();
+		FlushMode flushMode = session.getHibernateFlushMode();
+		Transaction transaction = null;
+		try {
+			session.setDefaultReadOnly(readOnly);
+			if (!readOnly)
+				unitOfWork.beginWrite();
+			else if (transactional && !unitOfWork.isWriting()) {
+				session.setHibernateFlushMode(FlushMode.MANUAL);
+				session.doWork(connection -> connection.setReadOnly(true));
+				transaction = session.beginTransaction();
+			}
+			R result = function.apply(session);
+			if (transaction != null)
+				// releases the connection, the pool resets it to read-write
+				transaction.commit();
+			else if (!readOnly)
+				session.flush();
+			return result;
+		} catch (RuntimeException e) {
+			if (transaction != null && transaction.isActive())
+				transaction.rollback();
+			unitOfWork.fail();
+			throw e;
+		} finally {
+			session.setDefaultReadOnly(defaultReadOnly);
+			session.setHibernateFlushMode(flushMode);
+		}
+	}
+
 }
@@ -0,0 +1,28 @@
+package at.lmk.db;
+
+/**
+ * Outcome of {@link SessionUtil#login}
+ */
+public enum LoginResult {
+
+	/**
+	 * The credentials were valid and a session was started
+	 */
+	SUCCESS,
+
+	/**
+	 * No or wrong credentials
+	 */
+	FAILED,
+
+	/**
+	 * Too many attempts from the same address, to be answered with 429
+	 */
+	THROTTLED,
+
+	/**
+	 * The password verification is saturated, to be answered with 503
+	 */
+	OVERLOADED
+
+}
@@ -0,0 +1,32 @@
+package at.lmk.db;
+
+/**
+ * Sort order of a query on one field of an entity
+ */
+public class Order {
+
+	private final String field;
+	private final boolean ascending;
+
+	private Order(String field, boolean ascending) {
+		this.field = field;
+		this.ascending = ascending;
+	}
+
+	public static Order asc(String field) {
+		return new Order(field, true);
+	}
+
+	public static Order desc(String field) {
+		return new Order(field, false);
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	public boolean isAscending() {
+		return ascending;
+	}
+
+}
@@ -0,0 +1,121 @@
+package at.lmk.db;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import at.lmk.util.ExpiringCache;
+import at.lmk.util.Metrics;
+import at.lmk.util.Threads;
+import at.lmk.util.TokenBucket;
+
+/**
+ * Runs the BCrypt checks of logins on a few dedicated threads with a bounded
+ * queue, so a burst of logins cannot occupy the request threads. Attempts are
+ * throttled per address with a token bucket.
+ */
+class PasswordVerifier {
+
+	private static final int THREADS = Integer.getInteger("owl.bcrypt.threads",
+			Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+	private static final int QUEUE_SIZE = Integer.getInteger("owl.bcrypt.queueSize", 32);
+	private static final long TIMEOUT = Long.getLong("owl.bcrypt.timeoutMillis", 5000);
+
+	private static final int BURST = Integer.getInteger("owl.login.burst", 5);
+	private static final double PER_MINUTE = Integer.getInteger("owl.login.perMinute", 10);
+
+	private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 0,
+			TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE), Threads.daemon("owl-bcrypt"));
+
+	/**
+	 * A bucket is put again whenever an attempt is taken from it, so it expires
+	 * only once it would have refilled completely. A new full bucket then behaves
+	 * the same.
+	 */
+	private static final ExpiringCache<String, TokenBucket> buckets = new ExpiringCache<>("login.buckets",
+			(long) Math.ceil(BURST * 60 / PER_MINUTE), TimeUnit.SECONDS,
+			Integer.getInteger("owl.login.maxAddresses", 100_000));
+
+	private static final LongAdder checks = new LongAdder();
+	private static final LongAdder rejected = new LongAdder();
+	private static final LongAdder throttled = new LongAdder();
+	private static final LongAdder waitNanos = new LongAdder();
+	private static final LongAdder verifyNanos = new LongAdder();
+
+	static {
+		Threads.housekeeping().scheduleWithFixedDelay(buckets::sweep, 1, 1, TimeUnit.MINUTES);
+		Metrics.register("bcrypt.queued", executor.getQueue()::size);
+		Metrics.register("bcrypt.active", executor::getActiveCount);
+		Metrics.register("bcrypt.checks", checks::sum);
+		Metrics.register("bcrypt.rejected", rejected::sum);
+		Metrics.register("bcrypt.meanWaitMillis", () -> mean(waitNanos));
+		Metrics.register("bcrypt.meanVerifyMillis", () -> mean(verifyNanos));
+		Metrics.register("login.throttled", throttled::sum);
+		Metrics.register("login.addresses", buckets::size);
+	}
+
+	/**
+	 * @return false if the address has used up its attempts
+	 */
+	static boolean admit(String address) {
+		TokenBucket bucket = buckets.computeIfAbsent(address, a -> new TokenBucket(BURST, PER_MINUTE / 60));
+		if (bucket.tryAcquire()) {
+			buckets.put(address, bucket);
+			return true;
+		}
+		throttled.increment();
+		return false;
+	}
+
+	/**
+	 * Checks the password on the verifier threads
+	 *
+	 * @return whether the password matches, null if the verifier is saturated or
+	 *         the check timed out
+	 */
+	static Boolean check(String password, String hash) {
+		long queued = System.nanoTime();
+		Future<Boolean> result;
+		try {
+			result = executor.submit(() -> {
+				long start = System.nanoTime();
+				waitNanos.add(start - queued);
+				try {
+					return BCrypt.checkpw(password, hash);
+				} finally {
+					verifyNanos.add(System.nanoTime() - start);
+					checks.increment();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			return null;
+		}
+		try {
+			return result.get(TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			result.cancel(true);
+			rejected.increment();
+			return null;
+		} catch (InterruptedException e) {
+			result.cancel(true);
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static double mean(LongAdder nanos) {
+		long count = checks.sum();
+		return count == 0 ? 0 : nanos.sum() / 1e6 / count;
+	}
+
+}
@@ -0,0 +1,32 @@
+package at.lmk.db;
+
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Hands out ids from blocks of owl.id.allocationSize (50), so only one in that
+ * many inserts fetches the next sequence value. Without database sequences,
+ * e.g. on MySQL, a table with one row is used instead.
+ * <p>
+ * The hi/lo optimizer keeps the increment of the sequence at 1, every value
+ * reserves the block of ids up to value * size. The allocation size of an
+ * existing database may therefore be raised but not lowered, smaller blocks
+ * would overlap ids already used.
+ */
+public class PooledIdGenerator extends SequenceStyleGenerator {
+
+	static final int ALLOCATION_SIZE = Integer.getInteger("owl.id.allocationSize", 50);
+
+	@Override
+	public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+		params.putIfAbsent(OPT_PARAM, StandardOptimizerDescriptor.HILO.getExternalName());
+		params.putIfAbsent(INCREMENT_PARAM, String.valueOf(ALLOCATION_SIZE));
+		super.configure(type, params, serviceRegistry);
+	}
+
+}
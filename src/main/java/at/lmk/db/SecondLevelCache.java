@@ -0,0 +1,108 @@
+package at.lmk.db;
+
+import java.time.Duration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import at.lmk.db.entities.User;
+import at.lmk.db.entities.UserSession;
+import at.lmk.util.Metrics;
+
+/**
+ * In-process Ehcache regions for the second-level and query cache. The size
+ * and time to live of a region are read from owl.cache.&lt;region&gt;.size and
+ * owl.cache.&lt;region&gt;.ttlSeconds, the cache is turned off with
+ * owl.cache=false. Hit ratios are shown with owl.cache.statistics=true.
+ */
+class SecondLevelCache {
+
+	private static final boolean ENABLED = !"false".equals(System.getProperty("owl.cache"));
+
+	/**
+	 * Hibernate statistics cost a little on every operation, so the hit ratios
+	 * are only collected with owl.cache.statistics=true
+	 */
+	private static final boolean STATISTICS = Boolean.getBoolean("owl.cache.statistics");
+
+	private static final String[] ENTITY_REGIONS = { User.CACHE_REGION, UserSession.CACHE_REGION };
+
+	static void configure(Configuration configuration) {
+		if (STATISTICS) {
+			configuration.setProperty(AvailableSettings.GENERATE_STATISTICS, "true");
+			// statistics are only collected for the hit ratios, not logged per session
+			configuration.setProperty(AvailableSettings.LOG_SESSION_METRICS, "false");
+		}
+		if (!ENABLED)
+			return;
+		CachingProvider provider = Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+		CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(),
+				SecondLevelCache.class.getClassLoader());
+		createRegion(cacheManager, User.CACHE_REGION, 10_000, 900);
+		createRegion(cacheManager, UserSession.CACHE_REGION, 10_000, 900);
+		createRegion(cacheManager, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, 1_000, 300);
+		// must not expire before the query results it invalidates
+		createRegion(cacheManager, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, 1_000, 0);
+
+		configuration.setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+		configuration.setProperty(AvailableSettings.USE_QUERY_CACHE, "true");
+		configuration.setProperty(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+		configuration.getProperties().put(ConfigSettings.CACHE_MANAGER, cacheManager);
+	}
+
+	private static void createRegion(CacheManager cacheManager, String region, long size, long ttlSeconds) {
+		size = Long.getLong("owl.cache." + region + ".size", size);
+		ttlSeconds = Long.getLong("owl.cache." + region + ".ttlSeconds", ttlSeconds);
+		CacheConfigurationBuilder<Object, Object> builder = CacheConfigurationBuilder
+				.newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(size));
+		if (ttlSeconds > 0)
+			builder = builder.withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ttlSeconds)));
+		cacheManager.createCache(region, Eh107Configuration.fromEhcacheCacheConfiguration(builder.build()));
+	}
+
+	/**
+	 * Registers hits, misses and hit ratio of the entity regions and the query
+	 * cache, if statistics are collected
+	 */
+	static void registerMetrics(SessionFactory sessionFactory) {
+		if (!ENABLED || !STATISTICS)
+			return;
+		Statistics statistics = sessionFactory.getStatistics();
+		for (String region : ENTITY_REGIONS) {
+			Metrics.register("cache." + region + ".hits", () -> regionStatistics(statistics, region).getHitCount());
+			Metrics.register("cache." + region + ".misses",
+					() -> regionStatistics(statistics, region).getMissCount());
+			Metrics.register("cache." + region + ".hitRatio", () -> {
+				CacheRegionStatistics r = regionStatistics(statistics, region);
+				return ratio(r.getHitCount(), r.getMissCount());
+			});
+		}
+		Metrics.register("cache.query.hits", statistics::getQueryCacheHitCount);
+		Metrics.register("cache.query.misses", statistics::getQueryCacheMissCount);
+		Metrics.register("cache.query.hitRatio",
+				() -> ratio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount()));
+	}
+
+	private static CacheRegionStatistics regionStatistics(Statistics statistics, String region) {
+		return statistics.getDomainDataRegionStatistics(region);
+	}
+
+	private static double ratio(long hits, long misses) {
+		return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+
+}
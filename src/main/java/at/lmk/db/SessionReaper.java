@@ -0,0 +1,96 @@
+package at.lmk.db;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import at.lmk.db.entities.UserSession;
+import at.lmk.util.Metrics;
+import at.lmk.util.Threads;
+
+/**
+ * Deletes the sessions that were inactive for longer than the cooldown, in
+ * chunks of ids so that no run holds locks on the whole table
+ */
+public class SessionReaper {
+
+	private static final int CHUNK_SIZE = Integer.getInteger("owl.reaper.chunkSize", 1000);
+
+	private static final AtomicLong lastRemoved = new AtomicLong();
+	private static final AtomicLong lastMillis = new AtomicLong();
+	private static final LongAdder removed = new LongAdder();
+	private static final LongAdder runs = new LongAdder();
+
+	static {
+		Metrics.register("reaper.lastRemoved", lastRemoved::get);
+		Metrics.register("reaper.lastMillis", lastMillis::get);
+		Metrics.register("reaper.removed", removed::sum);
+		Metrics.register("reaper.runs", runs::sum);
+	}
+
+	/**
+	 * Runs the reaper every owl.reaper.intervalSeconds on the housekeeping thread
+	 */
+	static void schedule() {
+		long interval = Long.getLong("owl.reaper.intervalSeconds", 60);
+		Threads.housekeeping().scheduleWithFixedDelay(() -> {
+			try {
+				reap();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}, interval, interval, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Deletes all sessions older than the cooldown and evicts them from the
+	 * session cache
+	 *
+	 * @return the number of deleted sessions
+	 */
+	public static int reap() {
+		long start = System.nanoTime();
+		// pending activity must reach the table before it is compared
+		SessionTouches.flush();
+		Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(SessionUtil.COOLDOWN));
+		Set<Long> deleted = new HashSet<>();
+		while (true) {
+			List<Long> ids = deleteChunk(cutoff);
+			if (ids == null || ids.isEmpty())
+				break;
+			deleted.addAll(ids);
+			if (ids.size() < CHUNK_SIZE)
+				break;
+		}
+		// one pass over the cache for all chunks
+		if (!deleted.isEmpty())
+			SessionUtil.evict(deleted);
+		int total = deleted.size();
+		lastRemoved.set(total);
+		lastMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		removed.add(total);
+		runs.increment();
+		return total;
+	}
+
+	/**
+	 * @return the ids deleted in one transaction, null if it failed
+	 */
+	private static List<Long> deleteChunk(Date cutoff) {
+		return HibernateUtil.performAction(s -> {
+			List<Long> ids = s
+					.createQuery("select id from " + UserSession.class.getName() + " where timestamp < :cutoff",
+							Long.class)
+					.setParameter("cutoff", cutoff).setMaxResults(CHUNK_SIZE).list();
+			if (!ids.isEmpty())
+				s.createQuery("delete from " + UserSession.class.getName() + " where id in (:ids)")
+						.setParameterList("ids", ids).executeUpdate();
+			return ids;
+		});
+	}
+
+}
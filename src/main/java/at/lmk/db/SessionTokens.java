@@ -0,0 +1,202 @@
+package at.lmk.db;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import at.lmk.db.entities.User;
+import at.lmk.util.ExpiringCache;
+
+/**
+ * Stateless sessions kept in a HMAC-SHA256 signed cookie. The token carries
+ * everything a page needs, so it is verified without any lookup. Every node
+ * configured with the same owl.token.secret accepts the tokens of the others.
+ * Without the secret no token is issued, the application does not start.
+ * <p>
+ * Revoked tokens are only known to the node that revoked them. Other nodes
+ * accept a token that was logged out until it expires, which is why tokens
+ * live only for the session cooldown.
+ */
+public class SessionTokens {
+
+	static final String COOKIE = "owl_session";
+
+	private static final String ALGORITHM = "HmacSHA256";
+	private static final long LIFETIME = TimeUnit.MINUTES.toMillis(SessionUtil.COOLDOWN);
+
+	private static final SecretKeySpec KEY = new SecretKeySpec(secret(), ALGORITHM);
+	private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(SessionTokens::newMac);
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+	private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+	/**
+	 * Ids of revoked tokens. A token keeps its id when it is refreshed and is not
+	 * refreshed while revoked, so an entry can expire together with the token.
+	 */
+	private static final ExpiringCache<String, Boolean> revoked = new ExpiringCache<String, Boolean>(
+			"tokens.revoked", SessionUtil.COOLDOWN, TimeUnit.MINUTES,
+			Integer.getInteger("owl.token.maxRevoked", 100_000)).registerMetrics();
+
+	/**
+	 * The content of a valid token
+	 */
+	static class Token {
+
+		private final String id;
+		private final long userId;
+		private final String firstName;
+		private final long expires;
+
+		private Token(String id, long userId, String firstName, long expires) {
+			this.id = id;
+			this.userId = userId;
+			this.firstName = firstName;
+			this.expires = expires;
+		}
+
+		/**
+		 * @return a user holding only id and first name, it is not loaded from and
+		 *         must not be written to the database
+		 */
+		User getUser() {
+			User user = new User();
+			user.setId(userId);
+			user.setFirstName(firstName);
+			return user;
+		}
+
+	}
+
+	/**
+	 * Sets a new token for the user
+	 */
+	static void issue(User user, HttpServletRequest request, HttpServletResponse response) {
+		byte[] id = new byte[12];
+		RANDOM.nextBytes(id);
+		write(new Token(ENCODER.encodeToString(id), user.getId(), user.getFirstName(),
+				System.currentTimeMillis() + LIFETIME), request, response);
+	}
+
+	/**
+	 * Verifies the token of the request and refreshes it once less than half of
+	 * its lifetime is left
+	 *
+	 * @return the token, null if there is none or it is invalid, expired or
+	 *         revoked
+	 */
+	static Token verify(HttpServletRequest request, HttpServletResponse response) {
+		Token token = read(request);
+		if (token == null)
+			return null;
+		long now = System.currentTimeMillis();
+		if (token.expires - now < LIFETIME / 2 && response != null)
+			write(new Token(token.id, token.userId, token.firstName, now + LIFETIME), request, response);
+		return token;
+	}
+
+	/**
+	 * Revokes the token of the request on this node until it expires and removes
+	 * the cookie from the client
+	 */
+	static void revoke(HttpServletRequest request, HttpServletResponse response) {
+		Token token = read(request);
+		if (token != null)
+			revoked.put(token.id, Boolean.TRUE);
+		Cookie cookie = cookie("", request);
+		cookie.setMaxAge(0);
+		response.addCookie(cookie);
+	}
+
+	private static Token read(HttpServletRequest request) {
+		Cookie[] cookies = request.getCookies();
+		if (cookies == null)
+			return null;
+		for (Cookie c : cookies)
+			if (COOKIE.equals(c.getName()))
+				return parse(c.getValue());
+		return null;
+	}
+
+	private static Token parse(String value) {
+		int dot = value.indexOf('.');
+		if (dot < 0)
+			return null;
+		try {
+			byte[] payload = DECODER.decode(value.substring(0, dot));
+			byte[] signature = DECODER.decode(value.substring(dot + 1));
+			if (!MessageDigest.isEqual(sign(payload), signature))
+				return null;
+			String[] fields = new String(payload, StandardCharsets.UTF_8).split("\\|", 4);
+			if (fields.length != 4)
+				return null;
+			Token token = new Token(fields[0], Long.parseLong(fields[1]), fields[3], Long.parseLong(fields[2]));
+			if (token.expires <= System.currentTimeMillis() || revoked.get(token.id) != null)
+				return null;
+			return token;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static void write(Token token, HttpServletRequest request, HttpServletResponse response) {
+		byte[] payload = (token.id + "|" + token.userId + "|" + token.expires + "|" + token.firstName)
+				.getBytes(StandardCharsets.UTF_8);
+		response.addCookie(
+				cookie(ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload)), request));
+	}
+
+	/**
+	 * @return the session cookie, written and removed with the same path and
+	 *         flags
+	 */
+	private static Cookie cookie(String value, HttpServletRequest request) {
+		Cookie cookie = new Cookie(COOKIE, value);
+		cookie.setHttpOnly(true);
+		cookie.setSecure(request.isSecure());
+		cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+		return cookie;
+	}
+
+	private static byte[] sign(byte[] payload) {
+		return MAC.get().doFinal(payload);
+	}
+
+	/**
+	 * Creates the signing key, so a missing secret is noticed on startup
+	 */
+	static void initialize() {
+		newMac();
+	}
+
+	private static Mac newMac() {
+		try {
+			Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(KEY);
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads owl.token.secret. There is no random fallback, it would only work
+	 * with a single node and end all sessions on restart.
+	 */
+	private static byte[] secret() {
+		String secret = System.getProperty("owl.token.secret");
+		if (secret == null || secret.isEmpty())
+			throw new IllegalStateException("owl.session.mode=token requires owl.token.secret");
+		return secret.getBytes(StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,126 @@
+package at.lmk.db;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import at.lmk.db.entities.UserSession;
+import at.lmk.util.Metrics;
+import at.lmk.util.Threads;
+
+/**
+ * Collects the activity timestamps of sessions and writes them behind in JDBC
+ * batches. Repeated touches of one session between two flushes result in one
+ * update.
+ */
+public class SessionTouches {
+
+	private static final String UPDATE = "update UserSession set timestamp = ? where id = ? and timestamp < ?";
+
+	private static final int MAX_PENDING = Integer.getInteger("owl.touch.maxPending", 10_000);
+	private static final int BATCH_SIZE = 500;
+
+	private static final Map<Long, Date> pending = new ConcurrentHashMap<>();
+	private static final AtomicBoolean flushRequested = new AtomicBoolean();
+
+	private static final LongAdder touches = new LongAdder();
+	private static final LongAdder dropped = new LongAdder();
+	private static final LongAdder written = new LongAdder();
+	private static final LongAdder batches = new LongAdder();
+
+	static {
+		long interval = Long.getLong("owl.touch.flushSeconds", 5);
+		Threads.housekeeping().scheduleWithFixedDelay(SessionTouches::flushQuietly, interval, interval,
+				TimeUnit.SECONDS);
+		Metrics.register("touches.pending", pending::size);
+		Metrics.register("touches.received", touches::sum);
+		Metrics.register("touches.dropped", dropped::sum);
+		Metrics.register("touches.written", written::sum);
+		Metrics.register("touches.batches", batches::sum);
+	}
+
+	/**
+	 * Records activity of a session, the database is updated with the next flush.
+	 * If too many sessions are pending the touch is dropped and an early flush is
+	 * started, the session is touched again on its next request.
+	 */
+	public static void touch(long sessionId, Date timestamp) {
+		touches.increment();
+		if (pending.size() >= MAX_PENDING && !pending.containsKey(sessionId)) {
+			dropped.increment();
+			if (flushRequested.compareAndSet(false, true))
+				Threads.housekeeping().execute(SessionTouches::flushQuietly);
+			return;
+		}
+		pending.merge(sessionId, timestamp, (a, b) -> a.after(b) ? a : b);
+	}
+
+	/**
+	 * Forgets pending touches of a session, e.g. after it was deleted
+	 */
+	public static void discard(long sessionId) {
+		pending.remove(sessionId);
+	}
+
+	/**
+	 * Writes all pending touches, called periodically and on shutdown
+	 *
+	 * @return the number of updated sessions, 0 if the update failed and the
+	 *         touches are kept
+	 */
+	public static synchronized int flush() {
+		flushRequested.set(false);
+		List<Map.Entry<Long, Date>> batch = new ArrayList<>();
+		for (Map.Entry<Long, Date> e : pending.entrySet())
+			if (pending.remove(e.getKey(), e.getValue()))
+				batch.add(e);
+		if (batch.isEmpty())
+			return 0;
+		LongAdder updated = new LongAdder();
+		boolean success = HibernateUtil.doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(UPDATE)) {
+				int count = 0;
+				for (Map.Entry<Long, Date> e : batch) {
+					Timestamp timestamp = new Timestamp(e.getValue().getTime());
+					statement.setTimestamp(1, timestamp);
+					statement.setLong(2, e.getKey());
+					statement.setTimestamp(3, timestamp);
+					statement.addBatch();
+					if (++count % BATCH_SIZE == 0 || count == batch.size()) {
+						for (int rows : statement.executeBatch())
+							// rewritten MySQL batches report no counts
+							updated.add(rows == Statement.SUCCESS_NO_INFO ? 1 : rows);
+						batches.increment();
+					}
+				}
+			}
+		});
+		if (!success) {
+			// the transaction was rolled back, keep the touches for the next flush
+			for (Map.Entry<Long, Date> e : batch)
+				pending.merge(e.getKey(), e.getValue(), (a, b) -> a.after(b) ? a : b);
+			return 0;
+		}
+		for (Map.Entry<Long, Date> e : batch)
+			HibernateUtil.evict(UserSession.class, e.getKey());
+		written.add(updated.sum());
+		return updated.intValue();
+	}
+
+	private static void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+
+}
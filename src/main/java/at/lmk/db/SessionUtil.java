@@ -1,90 +1,239 @@
 package at.lmk.db;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.mindrot.jbcrypt.BCrypt;
 
 import at.lmk.db.entities.User;
 import at.lmk.db.entities.UserSession;
+import at.lmk.util.ExpiringCache;
+import at.lmk.util.Threads;
 
 public class SessionUtil {
 
-	private static final long COOLDOWN = 15;
+	/**
+	 * Minutes of inactivity after which a session ends
+	 */
+	static final long COOLDOWN = 15;
 
-	private static Map<String, UserSession> sessions = new HashMap<>();
-	private static Map<Long, User> user = new HashMap<>();
+	/**
+	 * With owl.session.mode=token sessions are kept in signed cookies instead of
+	 * being keyed by agent and ip, see {@link SessionTokens}
+	 */
+	private static final boolean TOKENS = "token".equals(System.getProperty("owl.session.mode"));
+
+	/**
+	 * Addresses of the reverse proxies in front of the application, a comma
+	 * separated list in owl.proxy.trusted. X-Forwarded-For is only honoured for
+	 * requests coming from one of them. Behind Tomcat's RemoteIpValve the remote
+	 * address already is the client and this stays unset.
+	 */
+	private static final Set<String> TRUSTED_PROXIES = trustedProxies();
+
+	/**
+	 * Request attribute holding the user of a verified token
+	 */
+	private static final String USER_ATTRIBUTE = User.class.getName();
+
+	/**
+	 * Checked against when the email is unknown, so every login attempt costs one
+	 * BCrypt check and the response time does not tell which emails exist
+	 */
+	private static final String DUMMY_HASH = BCrypt.hashpw("", BCrypt.gensalt());
+
+	/**
+	 * Logged in sessions by agent and ip, an entry expires COOLDOWN minutes after
+	 * it was loaded and is then checked against the database again
+	 */
+	private static final ExpiringCache<String, UserSession> sessions = new ExpiringCache<String, UserSession>(
+			"sessions", COOLDOWN, TimeUnit.MINUTES, Integer.getInteger("owl.session.maxSize", 100_000))
+					.registerMetrics();
+	static {
+		long sweep = Long.getLong("owl.session.sweepSeconds", 30);
+		Threads.housekeeping().scheduleWithFixedDelay(sessions::sweep, sweep, sweep, TimeUnit.SECONDS);
+		if (!TOKENS)
+			SessionReaper.schedule();
+	}
+
+	/**
+	 * Loads the session handling when the application starts, in token mode a
+	 * missing owl.token.secret stops the start instead of the first login
+	 */
+	public static void initialize() {
+		if (TOKENS)
+			SessionTokens.initialize();
+	}
+
+	/**
+	 * Like {@link #checkForUserLogin(HttpServletRequest)}, in token mode a token
+	 * running out is refreshed through the response
+	 */
+	public static boolean checkForUserLogin(HttpServletRequest request, HttpServletResponse response) {
+		if (!TOKENS)
+			return checkForUserLogin(request);
+		SessionTokens.Token token = SessionTokens.verify(request, response);
+		if (token == null)
+			return false;
+		request.setAttribute(USER_ATTRIBUTE, token.getUser());
+		return true;
+	}
 
 	public static boolean checkForUserLogin(HttpServletRequest request) {
+		if (TOKENS)
+			return checkForUserLogin(request, null);
 		String agent = getAgent(request);
 		String ip = getIp(request);
 		Date d = new Date();
-		if (sessions.containsKey(agent + ip)) {
-			if (TimeUnit.MINUTES.convert(Math.abs(d.getTime() - sessions.get(agent + ip).getTimestamp().getTime()),
-					TimeUnit.MILLISECONDS) < COOLDOWN)
-				return true;
-			else
-				sessions.remove(agent + ip);
-		}
-
-		List<UserSession> sessions = HibernateUtil.list(UserSession.class);
-		for (UserSession s : sessions) {
-			if (s.getAgent().equals(agent) && s.getIp().equals(ip)) {
-				s.setTimestamp(d);
-				HibernateUtil.update(s);
-				if (!SessionUtil.sessions.containsKey(agent + ip))
-					SessionUtil.sessions.put(agent + ip, s);
-				if (!user.containsKey(s.getUserId()))
-					user.put(s.getUserId(), HibernateUtil.get(User.class, s.getUserId()));
-				return true;
+		UserSession cached = sessions.get(agent + ip);
+		if (cached != null) {
+			if (isExpired(cached, d)) {
+				sessions.remove(agent + ip, cached);
+				return false;
 			}
+			touch(cached, d);
+			return true;
 		}
-		return false;
+
+		Map<String, String> key = new HashMap<>();
+		key.put("agent", agent);
+		key.put("ip", ip);
+		UserSession s = HibernateUtil.find(UserSession.class, UserSession.BY_AGENT_AND_IP, key);
+		if (s == null || isExpired(s, d))
+			return false;
+		touch(s, d);
+		sessions.put(agent + ip, s);
+		return true;
 	}
 
-	public static boolean login(HttpServletRequest request) {
+	/**
+	 * Logs in with the request parameters "login" and "password", in token mode
+	 * the token is set on the response. The password is checked on the
+	 * {@link PasswordVerifier}, attempts are throttled per ip.
+	 */
+	public static LoginResult login(HttpServletRequest request, HttpServletResponse response) {
 		String user = request.getParameter("login");
+		if (user == null)
+			return LoginResult.FAILED;
 		String pw = request.getParameter("password");
-		String agent = getAgent(request);
 		String ip = getIp(request);
-		for (User u : HibernateUtil.list(User.class))
-			if (u.getEmail().equals(user) && BCrypt.checkpw(pw, u.getPassword())) {
-				UserSession session = new UserSession().init(u.getId(), agent, ip, new Date());
-				sessions.put(agent + ip, session);
-				SessionUtil.user.put(u.getId(), u);
-				HibernateUtil.insert(session);
-				return true;
-			}
-		return false;
+		if (!PasswordVerifier.admit(ip))
+			return LoginResult.THROTTLED;
+		User u = HibernateUtil.find(User.class, User.BY_EMAIL, "email", user);
+		Boolean valid = PasswordVerifier.check(pw == null ? "" : pw, u == null ? DUMMY_HASH : u.getPassword());
+		if (valid == null)
+			return LoginResult.OVERLOADED;
+		if (u == null || !valid)
+			return LoginResult.FAILED;
+		if (TOKENS) {
+			SessionTokens.issue(u, request, response);
+			return LoginResult.SUCCESS;
+		}
+		String agent = getAgent(request);
+		UserSession session = new UserSession().init(u.getId(), agent, ip, new Date());
+		sessions.put(agent + ip, session);
+		HibernateUtil.insert(session);
+		return LoginResult.SUCCESS;
 	}
 
-	public static void logout(HttpServletRequest request) {
+	/**
+	 * Ends the session of the request, in token mode the cookie is removed
+	 * through the response
+	 */
+	public static void logout(HttpServletRequest request, HttpServletResponse response) {
+		if (TOKENS) {
+			SessionTokens.revoke(request, response);
+			return;
+		}
 		String agent = getAgent(request);
 		String ip = getIp(request);
-		UserSession session = sessions.get(agent + ip);
-		sessions.remove(agent + ip);
-		user.remove(session.getUserId());
+		UserSession session = sessions.remove(agent + ip);
+		if (session == null)
+			return;
+		SessionTouches.discard(session.getId());
 		HibernateUtil.delete(session);
 	}
 
+	/**
+	 * Removes the cached sessions with the given ids, after they were deleted
+	 */
+	static void evict(Set<Long> sessionIds) {
+		sessions.removeIf((key, session) -> sessionIds.contains(session.getId()));
+		sessionIds.forEach(SessionTouches::discard);
+	}
+
+	/**
+	 * @return true if the session was inactive for longer than the cooldown, it
+	 *         may not have been deleted by the {@link SessionReaper} yet
+	 */
+	private static boolean isExpired(UserSession session, Date now) {
+		return now.getTime() - session.getTimestamp().getTime() > TimeUnit.MINUTES.toMillis(COOLDOWN);
+	}
+
+	private static void touch(UserSession session, Date timestamp) {
+		session.setTimestamp(timestamp);
+		SessionTouches.touch(session.getId(), timestamp);
+	}
+
 	public static String getAgent(HttpServletRequest request) {
 		return request.getHeader("User-Agent");
 	}
 
+	/**
+	 * The address sessions and login attempts are keyed on. Behind a trusted proxy
+	 * it is the right-most address in X-Forwarded-For that is not a trusted proxy
+	 * itself, everything left of it can be sent by the client.
+	 */
 	public static String getIp(HttpServletRequest request) {
-		String ip = request.getHeader("X-FORWARDED-FOR");
-		if (ip == null)
-			ip = request.getRemoteAddr();
+		String ip = request.getRemoteAddr();
+		if (!TRUSTED_PROXIES.contains(ip))
+			return ip;
+		List<String> hops = new ArrayList<>();
+		Enumeration<String> headers = request.getHeaders("X-Forwarded-For");
+		while (headers != null && headers.hasMoreElements())
+			for (String hop : headers.nextElement().split(","))
+				if (!hop.trim().isEmpty())
+					hops.add(hop.trim());
+		for (int i = hops.size() - 1; i >= 0; i--) {
+			ip = hops.get(i);
+			if (!TRUSTED_PROXIES.contains(ip))
+				return ip;
+		}
 		return ip;
 	}
 
+	private static Set<String> trustedProxies() {
+		String trusted = System.getProperty("owl.proxy.trusted");
+		if (trusted == null || trusted.trim().isEmpty())
+			return Collections.emptySet();
+		Set<String> proxies = new HashSet<>();
+		for (String proxy : trusted.split(","))
+			if (!proxy.trim().isEmpty())
+				proxies.add(proxy.trim());
+		return proxies;
+	}
+
+	/**
+	 * @return the logged in user, null if there is no session for the request
+	 */
 	public static User getUser(HttpServletRequest request) {
-		return user.get(sessions.get(getAgent(request) + getIp(request)).getUserId());
+		if (TOKENS)
+			return (User) request.getAttribute(USER_ATTRIBUTE);
+		UserSession session = sessions.get(getAgent(request) + getIp(request));
+		if (session == null)
+			return null;
+		return HibernateUtil.get(User.class, session.getUserId());
 	}
 
 }
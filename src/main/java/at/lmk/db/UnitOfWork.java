@@ -0,0 +1,99 @@
+package at.lmk.db;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+/**
+ * One session shared by all {@link HibernateUtil} calls of a thread until the
+ * unit of work is closed. The session is opened with the first call. Reads
+ * before the first write run in short transactions of their own and return
+ * the connection to the pool in between. The first write begins the
+ * transaction of the unit of work, closing commits it, or rolls it back if a
+ * call or the caller failed.
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+	private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+	private Session session;
+	private boolean writing;
+	private boolean failed;
+
+	private UnitOfWork() {
+	}
+
+	/**
+	 * Binds a new unit of work to the current thread
+	 *
+	 * @throws IllegalStateException if the thread already has one
+	 */
+	public static UnitOfWork begin() {
+		if (current.get() != null)
+			throw new IllegalStateException("A unit of work is already active");
+		UnitOfWork unitOfWork = new UnitOfWork();
+		current.set(unitOfWork);
+		return unitOfWork;
+	}
+
+	/**
+	 * @return the unit of work of the current thread, null if there is none
+	 */
+	static UnitOfWork current() {
+		return current.get();
+	}
+
+	Session getSession() {
+		if (session == null)
+			session = HibernateUtil.getSessionFactory().openSession();
+		return session;
+	}
+
+	/**
+	 * Begins the transaction of the writes, it holds its connection until the
+	 * unit of work is closed
+	 */
+	void beginWrite() {
+		if (!writing) {
+			getSession().beginTransaction();
+			writing = true;
+		}
+	}
+
+	/**
+	 * @return whether the transaction of the writes has begun
+	 */
+	boolean isWriting() {
+		return writing;
+	}
+
+	/**
+	 * Makes closing roll back instead of commit
+	 */
+	public void fail() {
+		failed = true;
+	}
+
+	@Override
+	public void close() {
+		current.remove();
+		if (session == null)
+			return;
+		Transaction transaction = session.getTransaction();
+		try {
+			if (transaction.isActive()) {
+				if (failed)
+					transaction.rollback();
+				else
+					transaction.commit();
+			}
+		} catch (HibernateException e) {
+			e.printStackTrace();
+			if (transaction.isActive())
+				transaction.rollback();
+		} finally {
+			session.close();
+		}
+	}
+
+}
@@ -1,24 +1,48 @@
 package at.lmk.db.entities;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.QueryHints;
 import org.mindrot.jbcrypt.BCrypt;
 
 @Entity
-@Table(name = "User")
+@Table(name = "User", indexes = @Index(name = "idx_user_email", columnList = "email", unique = true))
+@NamedQuery(name = User.BY_EMAIL, query = "from User where email = :email", hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
 public class User {
 
+	/**
+	 * Second-level cache region of users
+	 */
+	public static final String CACHE_REGION = "user";
+
+	/**
+	 * Named query loading the user with the email given as parameter "email"
+	 */
+	public static final String BY_EMAIL = "User.byEmail";
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_id")
+	@GenericGenerator(name = "user_id", strategy = "at.lmk.db.PooledIdGenerator",
+			parameters = @Parameter(name = "sequence_name", value = "hibernate_sequence"))
 	@Column(name = "id")
 	private long id;
 
-	@Column(name = "email", nullable = false, unique = true)
+	@Column(name = "email", nullable = false)
 	private String email;
 
 	@Column(name = "firstname", nullable = false)
@@ -2,21 +2,45 @@ package at.lmk.db.entities;
 
 import java.util.Date;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 @Entity
-@Table(name = "UserSession")
+@Table(name = "UserSession", indexes = @Index(name = "idx_usersession_agent_ip", columnList = "agent, ip, timestamp"))
+@NamedQuery(name = UserSession.BY_AGENT_AND_IP, query = "from UserSession where agent = :agent and ip = :ip order by timestamp desc")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = UserSession.CACHE_REGION)
 public class UserSession {
 
+	/**
+	 * Second-level cache region of sessions
+	 */
+	public static final String CACHE_REGION = "usersession";
+
+	/**
+	 * Named query loading the sessions of parameters "agent" and "ip", latest
+	 * first
+	 */
+	public static final String BY_AGENT_AND_IP = "UserSession.byAgentAndIp";
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "usersession_id")
+	@GenericGenerator(name = "usersession_id", strategy = "at.lmk.db.PooledIdGenerator",
+			parameters = @Parameter(name = "sequence_name", value = "hibernate_sequence"))
 	@Column(name = "id")
 	private long id;
 
@@ -1,9 +1,80 @@
 package at.lmk.runner;
 
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardThreadExecutor;
+import org.apache.catalina.loader.WebappLoader;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.apache.catalina.webresources.JarResourceSet;
+import org.apache.catalina.webresources.StandardRoot;
+import org.apache.coyote.AbstractProtocol;
+
+import at.lmk.util.Threads;
+
+/**
+ * Starts Owl in an embedded Tomcat. Configured with system properties:
+ * <ul>
+ * <li>{@code owl.port} - http port, default 8080</li>
+ * <li>{@code owl.executor} - {@code pool} for a bounded worker pool or
+ * {@code virtual} for one virtual thread per request, default pool</li>
+ * <li>{@code owl.maxThreads} - size of the worker pool, default 200</li>
+ * <li>{@code owl.webContent} - directory with the static files and web.xml,
+ * default WebContent</li>
+ * </ul>
+ */
 public class Runner {
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws LifecycleException, URISyntaxException {
+		Tomcat tomcat = new Tomcat();
+		tomcat.setBaseDir(new File("target", "tomcat").getAbsolutePath());
+		tomcat.setPort(Integer.getInteger("owl.port", 8080));
+
+		Connector connector = tomcat.getConnector();
+		((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(createExecutor(tomcat));
+
+		Context context = tomcat.addWebapp("",
+				new File(System.getProperty("owl.webContent", "WebContent")).getAbsolutePath());
+		WebResourceRoot resources = new StandardRoot(context);
+		File classes = new File(Runner.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		if (classes.isDirectory())
+			resources.addPreResources(
+					new DirResourceSet(resources, "/WEB-INF/classes", classes.getAbsolutePath(), "/"));
+		else
+			resources.addPreResources(
+					new JarResourceSet(resources, "/WEB-INF/classes", classes.getAbsolutePath(), "/"));
+		context.setResources(resources);
+		// the application classes are on the class path as well, load them from there
+		// so Hibernate and the servlets see the same classes
+		WebappLoader loader = new WebappLoader();
+		loader.setDelegate(true);
+		context.setLoader(loader);
+
+		tomcat.start();
+		tomcat.getServer().await();
+	}
 
+	private static Executor createExecutor(Tomcat tomcat) {
+		if ("virtual".equals(System.getProperty("owl.executor"))) {
+			Optional<ExecutorService> virtual = Threads.newVirtualThreadPerTaskExecutor();
+			if (virtual.isPresent())
+				return virtual.get();
+			System.err.println("Virtual threads are not available on this JVM, using the worker pool");
+		}
+		StandardThreadExecutor pool = new StandardThreadExecutor();
+		pool.setName("owl-pool");
+		pool.setNamePrefix("owl-exec-");
+		pool.setMaxThreads(Integer.getInteger("owl.maxThreads", 200));
+		tomcat.getService().addExecutor(pool);
+		return pool;
 	}
 
 }
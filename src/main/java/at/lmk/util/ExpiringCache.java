@@ -0,0 +1,193 @@
+package at.lmk.util;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * A thread-safe map whose entries expire a fixed time after they were put.
+ * Reads are lock-free lookups in a {@link ConcurrentHashMap}. Expired entries
+ * are removed by {@link #sweep()}, which walks the entries in the order they
+ * were put and therefore only touches the entries that are actually due. The
+ * number of entries is capped, the oldest entries are evicted first.
+ */
+public class ExpiringCache<K, V> {
+
+	private final String name;
+	private final long ttl;
+	private final int maximumSize;
+
+	private final ConcurrentHashMap<K, Node<K, V>> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Every put appends a node, all entries share one TTL, so the queue is
+	 * ordered by expiry. Nodes of replaced or removed entries stay in the queue
+	 * until the sweep reaches them.
+	 */
+	private final Queue<Node<K, V>> expiryOrder = new ConcurrentLinkedQueue<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param name        used in metric names
+	 * @param ttl         time until an entry expires
+	 * @param unit        unit of the ttl
+	 * @param maximumSize maximum number of entries
+	 */
+	public ExpiringCache(String name, long ttl, TimeUnit unit, int maximumSize) {
+		this.name = name;
+		this.ttl = unit.toNanos(ttl);
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * @return the value, null if there is none or it has expired
+	 */
+	public V get(K key) {
+		Node<K, V> node = entries.get(key);
+		if (node == null || node.isExpired(System.nanoTime())) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return node.value;
+	}
+
+	public void put(K key, V value) {
+		Node<K, V> node = new Node<>(key, value, System.nanoTime() + ttl);
+		entries.put(key, node);
+		expiryOrder.add(node);
+		while (entries.size() > maximumSize && evictOldest())
+			;
+	}
+
+	/**
+	 * Returns the value or atomically puts a new one, concurrent callers get the
+	 * same value. The function may be called for a value that is then discarded.
+	 */
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+		long now = System.nanoTime();
+		Node<K, V> node = entries.get(key);
+		if (node != null && !node.isExpired(now)) {
+			hits.increment();
+			return node.value;
+		}
+		misses.increment();
+		Node<K, V> created = new Node<>(key, function.apply(key), now + ttl);
+		node = entries.compute(key, (k, n) -> n != null && !n.isExpired(now) ? n : created);
+		if (node == created) {
+			expiryOrder.add(created);
+			while (entries.size() > maximumSize && evictOldest())
+				;
+		}
+		return node.value;
+	}
+
+	public V remove(K key) {
+		Node<K, V> node = entries.remove(key);
+		return node == null ? null : node.value;
+	}
+
+	/**
+	 * Removes the entry only if it still holds the given value
+	 *
+	 * @return true if the entry was removed
+	 */
+	public boolean remove(K key, V value) {
+		Node<K, V> node = entries.get(key);
+		return node != null && node.value == value && entries.remove(key, node);
+	}
+
+	/**
+	 * Removes all entries matching the predicate, e.g. all sessions of one user
+	 */
+	public void removeIf(BiPredicate<K, V> predicate) {
+		for (Map.Entry<K, Node<K, V>> e : entries.entrySet())
+			if (predicate.test(e.getKey(), e.getValue().value))
+				entries.remove(e.getKey(), e.getValue());
+	}
+
+	/**
+	 * Removes the expired entries, meant to be called periodically from one
+	 * background thread
+	 *
+	 * @return the number of removed entries
+	 */
+	public int sweep() {
+		long now = System.nanoTime();
+		int removed = 0;
+		Node<K, V> node;
+		while ((node = expiryOrder.peek()) != null && node.isExpired(now)) {
+			if (expiryOrder.remove(node) && entries.remove(node.key, node))
+				removed++;
+		}
+		evictions.add(removed);
+		return removed;
+	}
+
+	private boolean evictOldest() {
+		Node<K, V> node = expiryOrder.poll();
+		if (node == null)
+			return false;
+		if (entries.remove(node.key, node))
+			evictions.increment();
+		return true;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Registers size, hits, misses and evictions of this cache
+	 */
+	public ExpiringCache<K, V> registerMetrics() {
+		Metrics.register(name + ".size", this::size);
+		Metrics.register(name + ".hits", this::getHits);
+		Metrics.register(name + ".misses", this::getMisses);
+		Metrics.register(name + ".evictions", this::getEvictions);
+		return this;
+	}
+
+	private static class Node<K, V> {
+
+		private final K key;
+		private final V value;
+		private final long expires;
+
+		private Node(K key, V value, long expires) {
+			this.key = key;
+			this.value = value;
+			this.expires = expires;
+		}
+
+		private boolean isExpired(long now) {
+			return now - expires >= 0;
+		}
+
+	}
+
+}
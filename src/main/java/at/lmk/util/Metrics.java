@@ -0,0 +1,32 @@
+package at.lmk.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Named runtime values, shown on the status page
+ */
+public class Metrics {
+
+	private static final Map<String, Supplier<?>> metrics = new ConcurrentHashMap<>();
+
+	/**
+	 * Registers a value that is read whenever the metrics are shown, a metric
+	 * registered again under the same name replaces the previous one
+	 */
+	public static void register(String name, Supplier<?> value) {
+		metrics.put(name, value);
+	}
+
+	/**
+	 * @return the current values sorted by name
+	 */
+	public static Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new TreeMap<>();
+		metrics.forEach((name, value) -> snapshot.put(name, value.get()));
+		return snapshot;
+	}
+
+}
@@ -0,0 +1,56 @@
+package at.lmk.util;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Threads {
+
+	/**
+	 * One daemon thread for periodic background work like cache sweeps
+	 */
+	private static final ScheduledExecutorService HOUSEKEEPING = Executors
+			.newSingleThreadScheduledExecutor(daemon("owl-housekeeping"));
+
+	/**
+	 * Looks up {@code Executors.newVirtualThreadPerTaskExecutor()} at runtime, so
+	 * the code still compiles and runs on JVMs without virtual threads
+	 *
+	 * @return an executor starting one virtual thread per task, empty if the
+	 *         running JVM has no virtual threads
+	 */
+	public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return Optional.of((ExecutorService) factory.invoke(null));
+		} catch (ReflectiveOperationException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * @return the scheduler for periodic background tasks, a failing task is
+	 *         expected to catch its own exceptions, otherwise it is not run again
+	 */
+	public static ScheduledExecutorService housekeeping() {
+		return HOUSEKEEPING;
+	}
+
+	/**
+	 * @param name prefix of the thread names
+	 * @return a factory for daemon threads, which do not keep the JVM alive
+	 */
+	public static ThreadFactory daemon(String name) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+}
@@ -0,0 +1,39 @@
+package at.lmk.util;
+
+/**
+ * Allows bursts of up to capacity operations, refilled continuously at a fixed
+ * rate
+ */
+public class TokenBucket {
+
+	private final double capacity;
+	private final double perNano;
+	private double tokens;
+	private long updated;
+
+	/**
+	 * @param capacity  maximum number of operations in a burst, the bucket starts
+	 *                  full
+	 * @param perSecond operations regained per second
+	 */
+	public TokenBucket(int capacity, double perSecond) {
+		this.capacity = capacity;
+		this.perNano = perSecond / 1e9;
+		this.tokens = capacity;
+		this.updated = System.nanoTime();
+	}
+
+	/**
+	 * @return whether a token was left and has been taken
+	 */
+	public synchronized boolean tryAcquire() {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - updated) * perNano);
+		updated = now;
+		if (tokens < 1)
+			return false;
+		tokens--;
+		return true;
+	}
+
+}
@@ -0,0 +1,32 @@
+package at.lmk.webapp;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+import at.lmk.db.HibernateUtil;
+import at.lmk.db.SessionTouches;
+import at.lmk.db.SessionUtil;
+
+@WebListener
+public class ApplicationListener implements ServletContextListener {
+
+	/**
+	 * Checks the session configuration before the first request
+	 */
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		SessionUtil.initialize();
+	}
+
+	/**
+	 * Writes the session activity that is still pending, then closes the session
+	 * factory and the connection pool
+	 */
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		SessionTouches.flush();
+		HibernateUtil.shutdown();
+	}
+
+}
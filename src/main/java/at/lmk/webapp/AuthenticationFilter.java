@@ -0,0 +1,128 @@
+package at.lmk.webapp;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRegistration;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import at.lmk.db.SessionUtil;
+import at.lmk.webapp.pages.Login;
+
+/**
+ * Checks the login once per request before any page is involved. Requests for
+ * pages without a session are redirected to the login, data endpoints answer
+ * 401. The user of a valid session is put into the request attribute
+ * {@link #USER}.
+ */
+@WebFilter(filterName = "AuthenticationFilter", urlPatterns = "/*")
+public class AuthenticationFilter extends HttpFilter {
+
+	private static final long serialVersionUID = -4387152702460870541L;
+
+	/**
+	 * Request attribute holding the logged in user
+	 */
+	public static final String USER = "at.lmk.webapp.user";
+
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+
+	private static final String[] STATIC_PATHS = { "/css/", "/js/", "/assets/" };
+
+	private enum Kind {
+		LOGIN, PAGE, DATA
+	}
+
+	/**
+	 * The kind of servlet per mapped path, other paths are not checked
+	 */
+	private final Map<String, Kind> kinds = new HashMap<>();
+
+	@Override
+	public void init(FilterConfig config) throws ServletException {
+		ServletContext context = config.getServletContext();
+		for (ServletRegistration registration : context.getServletRegistrations().values()) {
+			Kind kind = kindOf(registration.getClassName(), context.getClassLoader());
+			if (kind != null)
+				for (String mapping : registration.getMappings())
+					kinds.put(mapping, kind);
+		}
+	}
+
+	private static Kind kindOf(String className, ClassLoader loader) {
+		try {
+			Class<?> type = Class.forName(className, false, loader);
+			if (Login.class.isAssignableFrom(type))
+				return Kind.LOGIN;
+			if (EmptyPage.class.isAssignableFrom(type))
+				return Kind.PAGE;
+			if (JsonPage.class.isAssignableFrom(type))
+				return Kind.DATA;
+		} catch (ClassNotFoundException | LinkageError e) {
+			// not one of ours
+		}
+		return null;
+	}
+
+	@Override
+	protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		String path = request.getServletPath();
+		Kind kind = isStatic(path) ? null : kinds.get(path);
+		if (kind == null) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		boolean isLoggedIn = SessionUtil.checkForUserLogin(request, response);
+		if (kind == Kind.LOGIN) {
+			if (Boolean.valueOf(request.getParameter("logout")))
+				// before the page is rendered, the response may be committed then
+				SessionUtil.logout(request, response);
+			else if (isLoggedIn) {
+				response.sendRedirect("Index");
+				return;
+			}
+		} else if (!isLoggedIn) {
+			if (kind == Kind.DATA)
+				response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+			else
+				switch (SessionUtil.login(request, response)) {
+				case SUCCESS:
+					response.sendRedirect(path.substring(1));
+					break;
+				case THROTTLED:
+					response.setHeader("Retry-After", "60");
+					response.sendError(SC_TOO_MANY_REQUESTS);
+					break;
+				case OVERLOADED:
+					response.setHeader("Retry-After", "5");
+					response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+					break;
+				default:
+					response.sendRedirect("Login?return=" + path.substring(1));
+				}
+			return;
+		}
+
+		if (isLoggedIn)
+			request.setAttribute(USER, SessionUtil.getUser(request));
+		chain.doFilter(request, response);
+	}
+
+	private static boolean isStatic(String path) {
+		for (String prefix : STATIC_PATHS)
+			if (path.startsWith(prefix))
+				return true;
+		return false;
+	}
+
+}
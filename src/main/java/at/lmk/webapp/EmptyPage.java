@@ -1,7 +1,7 @@
 package at.lmk.webapp;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,8 +10,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import at.lmk.db.SessionUtil;
-import at.lmk.webapp.pages.Login;
+import at.lmk.db.entities.User;
+import at.lmk.webapp.PageTemplate.Hole;
 import j2html.tags.ContainerTag;
 import j2html.tags.DomContent;
 
@@ -21,25 +21,41 @@ public abstract class EmptyPage extends HttpServlet implements Tags {
 
 	protected static final String PAGE_TITLE = "Titel";
 
-	protected HttpServletRequest request;
+	/**
+	 * Size of the per request write buffer, the page is streamed to the client in
+	 * chunks of this size instead of being rendered into one string first
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
 
-	@Override
-	protected void doGet(HttpServletRequest request, HttpServletResponse response)
-			throws ServletException, IOException {
-		this.request = request;
+	/**
+	 * Placeholder for the content returned by
+	 * {@link #getPageContent(List, RenderContext)}
+	 */
+	protected static final Hole CONTENTS = new Hole("contents");
 
-		boolean isLoggedIn = SessionUtil.checkForUserLogin(request);
+	private PageTemplate template;
 
-		if (isLoggedIn && this instanceof Login && !Boolean.valueOf(request.getParameter("logout")))
-			response.sendRedirect("Index");
-		else if (isLoggedIn || this instanceof Login) {
-			PrintWriter out = response.getWriter();
-			out.write(render(this));
-		} else if (SessionUtil.login(request))
-			response.sendRedirect(request.getServletPath().substring(1));
-		else
-			response.sendRedirect("Login?return=" + request.getServletPath().substring(1));
+	/**
+	 * Renders everything around the holes once, only the holes are rendered per
+	 * request
+	 */
+	@Override
+	public void init() throws ServletException {
+		template = PageTemplate.compile(document(),
+				html(getHead(PAGE_TITLE), body(getBodyContent()).withClass("sb-nav-fixed")));
+	}
 
+	/**
+	 * Renders the page, the login was already checked by the
+	 * {@link AuthenticationFilter}
+	 */
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		RenderContext context = new RenderContext(request, (User) request.getAttribute(AuthenticationFilter.USER));
+		response.setContentType("text/html");
+		response.setCharacterEncoding("UTF-8");
+		render(context, response.getOutputStream());
 	}
 
 	@Override
@@ -48,21 +64,48 @@ public abstract class EmptyPage extends HttpServlet implements Tags {
 		doGet(request, response);
 	}
 
-	private String render(EmptyPage page) {
-		return document(html(getHead(PAGE_TITLE), body(getBodyContent(page)).withClass("sb-nav-fixed")));
+	/**
+	 * Writes the page for the given request to the stream
+	 *
+	 * @param context the request the page is rendered for
+	 * @param out     the stream the UTF-8 encoded page is written to
+	 * @throws IOException if writing to the stream fails
+	 */
+	public void render(RenderContext context, OutputStream out) throws IOException {
+		template.render(out, BUFFER_SIZE, hole -> fill(hole, context));
 	}
 
-	private DomContent[] getBodyContent(EmptyPage page) {
+	private DomContent[] getBodyContent() {
 		List<DomContent> content = new ArrayList<>();
-		getPageContent(content);
+		getPageLayout(content);
 		for (DomContent d : getScripts())
 			content.add(d);
 		if (this instanceof ScriptPage)
-			content.add(((ScriptPage) this).getScript());
+			content.add(ScriptPage.SCRIPT);
 		return content.toArray(new DomContent[content.size()]);
 	}
 
-	protected abstract void getPageContent(List<DomContent> content);
+	/**
+	 * Adds the invariant part of the body, which is rendered only once. Varying
+	 * parts are added as {@link Hole}s and resolved by
+	 * {@link #fill(Hole, RenderContext)}.
+	 */
+	protected void getPageLayout(List<DomContent> content) {
+		content.add(CONTENTS);
+	}
+
+	/**
+	 * Returns the content of a hole for the current request
+	 */
+	protected DomContent fill(Hole hole, RenderContext context) {
+		if (hole != CONTENTS)
+			return null;
+		List<DomContent> content = new ArrayList<>();
+		getPageContent(content, context);
+		return tag(null).with(content);
+	}
+
+	protected abstract void getPageContent(List<DomContent> content, RenderContext context);
 
 	public DomContent[] getScripts() {
 		return new DomContent[] {
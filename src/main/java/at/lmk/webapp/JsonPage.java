@@ -0,0 +1,44 @@
+package at.lmk.webapp;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import at.lmk.db.entities.User;
+
+/**
+ * Base class of the endpoints the pages load data from. Unlike a page it is
+ * answered with 401 instead of a redirect without login, see
+ * {@link AuthenticationFilter}.
+ */
+public abstract class JsonPage extends HttpServlet {
+
+	private static final long serialVersionUID = 2962384170634416913L;
+
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		RenderContext context = new RenderContext(request, (User) request.getAttribute(AuthenticationFilter.USER));
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		Writer out = new BufferedWriter(response.getWriter(), BUFFER_SIZE);
+		write(context, out);
+		out.flush();
+	}
+
+	@Override
+	protected void doPost(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		doGet(request, response);
+	}
+
+	protected abstract void write(RenderContext context, Writer out) throws IOException;
+
+}
@@ -4,14 +4,15 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 
-import at.lmk.db.SessionUtil;
+import at.lmk.webapp.PageTemplate.Hole;
 import j2html.tags.ContainerTag;
 import j2html.tags.DomContent;
 
 public abstract class Page extends EmptyPage implements Tags {
 
 	private enum Block {
-		CORE(BlockEntry.INDEX), INTERFACE(BlockEntry.TABLES), CHARTS(BlockEntry.AREACHARTPAGE, BlockEntry.PIECHARTPAGE);
+		CORE(BlockEntry.INDEX), INTERFACE(BlockEntry.TABLES), CHARTS(BlockEntry.AREACHARTPAGE, BlockEntry.PIECHARTPAGE),
+		SYSTEM(BlockEntry.STATUS);
 
 		BlockEntry[] pages;
 
@@ -23,7 +24,7 @@ public abstract class Page extends EmptyPage implements Tags {
 	public enum BlockEntry {
 		INDEX("Home", "Index", "fas fa-tachometer-alt"), TABLES("Tables", "Tables", "fas fa-table"),
 		AREACHARTPAGE("Area Chart", "AreaChart", "fas fa-chart-area"),
-		PIECHARTPAGE("Pie Chart", "PieChart", "fas fa-chart-pie");
+		PIECHARTPAGE("Pie Chart", "PieChart", "fas fa-chart-pie"), STATUS("Status", "Status", "fas fa-heartbeat");
 
 		String name;
 		String href;
@@ -38,14 +39,35 @@ public abstract class Page extends EmptyPage implements Tags {
 
 	private static final long serialVersionUID = -2283378096598115276L;
 
-	public abstract DomContent getContents();
+	protected static final Hole TITLE = new Hole("title");
+	protected static final Hole BREADCRUMB = new Hole("breadcrumb");
+	protected static final Hole USER_NAME = new Hole("userName");
+	protected static final Hole YEAR = new Hole("year");
+
+	public abstract DomContent getContents(RenderContext context);
 
 	@Override
-	protected void getPageContent(List<DomContent> content) {
+	protected void getPageLayout(List<DomContent> content) {
 		content.add(getTopNav());
 		content.add(getContent());
 	}
 
+	@Override
+	protected void getPageContent(List<DomContent> content, RenderContext context) {
+		content.add(getContents(context));
+	}
+
+	@Override
+	protected DomContent fill(Hole hole, RenderContext context) {
+		if (hole == TITLE || hole == BREADCRUMB)
+			return text(getTitle(context));
+		if (hole == USER_NAME)
+			return text(context.getUser().getFirstName());
+		if (hole == YEAR)
+			return text(String.valueOf(Calendar.getInstance().get(Calendar.YEAR)));
+		return super.fill(hole, context);
+	}
+
 	private ContainerTag getTopNav() {
 		return nav(a(img().withSrc("assets/img/owl.svg").attr("srcset", "assets/img/owl.svg").attr("height", "40"))
 				.withText("     OWL").withStyle("text-align:center").withClass("navbar-brand").withHref("Index"),
@@ -70,9 +92,9 @@ public abstract class Page extends EmptyPage implements Tags {
 
 	private DomContent getSideNav() {
 		return div(nav(div(div(getSideNavBlocks()).withClass("nav")).withClass("sb-sidenav-menu"),
-				div(div("Logged in as:").withClass("small")).withText(SessionUtil.getUser(request).getFirstName())
-						.withClass("sb-sidenav-footer")).withClass("sb-sidenav accordion sb-sidenav-dark")
-								.withId("sidenavAccordion")).withId("layoutSidenav_nav");
+				div(div("Logged in as:").withClass("small"), USER_NAME).withClass("sb-sidenav-footer"))
+						.withClass("sb-sidenav accordion sb-sidenav-dark").withId("sidenavAccordion"))
+								.withId("layoutSidenav_nav");
 	}
 
 	private DomContent[] getSideNavBlocks() {
@@ -92,12 +114,12 @@ public abstract class Page extends EmptyPage implements Tags {
 
 	private DomContent getMain() {
 		return div(
-				main(div(h1(getTitle()).withClass("mt-4"),
-						ol(li(getTitle()).withClass("breadcrumb-item active")).withClass("breadcrumb mb-4"),
-						div(getContents())).withClass("container-fluid")),
+				main(div(h1(TITLE).withClass("mt-4"),
+						ol(li(BREADCRUMB).withClass("breadcrumb-item active")).withClass("breadcrumb mb-4"),
+						div(CONTENTS)).withClass("container-fluid")),
 				footer(div(div(div(
 						div(text("Copyright "), rawHtml("&copy;"),
-								text(" " + PAGE_TITLE + " " + Calendar.getInstance().get(Calendar.YEAR)))
+								text(" " + PAGE_TITLE + " "), YEAR)
 										.withClass("text-muted"),
 						div(a("Privacy Policy").withHref("#"), text(" - "), a("Terms & Conditions").withHref("#"))))
 								.withClass("d-flex align-items-center justify-content-between small"))
@@ -105,7 +127,7 @@ public abstract class Page extends EmptyPage implements Tags {
 												.withId("layoutSidenav_content");
 	}
 
-	protected String getTitle() {
+	protected String getTitle(RenderContext context) {
 		String className = this.getClass().getSimpleName();
 		for (BlockEntry b : BlockEntry.values())
 			if (b.name().equals(className.toUpperCase()))
@@ -0,0 +1,179 @@
+package at.lmk.webapp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import j2html.tags.DomContent;
+
+/**
+ * A page skeleton that is rendered only once and kept as UTF-8 encoded byte
+ * segments. Only the {@link Hole}s between the segments are rendered per
+ * request.
+ */
+public class PageTemplate {
+
+	/**
+	 * Placeholder for a part of the page that varies per request
+	 */
+	public static class Hole extends DomContent {
+
+		private final String name;
+
+		public Hole(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public void renderModel(Appendable writer, Object model) throws IOException {
+			if (writer instanceof Builder)
+				((Builder) writer).hole(this);
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+	}
+
+	private final byte[][] segments;
+	private final Hole[] holes;
+
+	private PageTemplate(List<byte[]> segments, List<Hole> holes) {
+		this.segments = segments.toArray(new byte[segments.size()][]);
+		this.holes = holes.toArray(new Hole[holes.size()]);
+	}
+
+	/**
+	 * Renders the given content once and splits it at its holes
+	 *
+	 * @param content the skeleton of the page
+	 * @return the pre-rendered template
+	 */
+	public static PageTemplate compile(DomContent... content) {
+		Builder builder = new Builder();
+		try {
+			for (DomContent c : content)
+				c.render(builder);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Writes the template to the given stream, asking the filler for the content
+	 * of every hole
+	 *
+	 * @param out        the stream the page is written to
+	 * @param bufferSize the maximum number of bytes kept before writing to out
+	 * @param filler     returns the content of a hole, null leaves the hole empty
+	 * @throws IOException if writing to the stream fails
+	 */
+	public void render(OutputStream out, int bufferSize, Function<Hole, DomContent> filler) throws IOException {
+		Sink sink = new Sink(out, bufferSize);
+		Writer writer = new OutputStreamWriter(sink, StandardCharsets.UTF_8);
+		for (int i = 0; i < holes.length; i++) {
+			sink.write(segments[i]);
+			DomContent content = filler.apply(holes[i]);
+			if (content != null)
+				content.render(writer);
+			writer.flush();
+		}
+		sink.write(segments[holes.length]);
+		sink.drain();
+	}
+
+	private static class Builder implements Appendable {
+
+		private final StringBuilder current = new StringBuilder();
+		private final List<byte[]> segments = new ArrayList<>();
+		private final List<Hole> holes = new ArrayList<>();
+
+		private void hole(Hole hole) {
+			segments.add(current.toString().getBytes(StandardCharsets.UTF_8));
+			current.setLength(0);
+			holes.add(hole);
+		}
+
+		private PageTemplate build() {
+			segments.add(current.toString().getBytes(StandardCharsets.UTF_8));
+			return new PageTemplate(segments, holes);
+		}
+
+		@Override
+		public Appendable append(CharSequence csq) {
+			current.append(csq);
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) {
+			current.append(csq, start, end);
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c) {
+			current.append(c);
+			return this;
+		}
+
+	}
+
+	/**
+	 * Fixed size byte buffer in front of the response stream. Flushing the writer
+	 * after a hole only moves the encoded bytes in here, they are passed on once
+	 * the buffer is full or the page is done.
+	 */
+	private static class Sink extends OutputStream {
+
+		private final OutputStream out;
+		private final byte[] buffer;
+		private int count;
+
+		private Sink(OutputStream out, int size) {
+			this.out = out;
+			this.buffer = new byte[size];
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (count == buffer.length)
+				drain();
+			buffer[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (len >= buffer.length) {
+				drain();
+				out.write(b, off, len);
+				return;
+			}
+			if (len > buffer.length - count)
+				drain();
+			System.arraycopy(b, off, buffer, count, len);
+			count += len;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		private void drain() throws IOException {
+			if (count > 0)
+				out.write(buffer, 0, count);
+			count = 0;
+		}
+
+	}
+
+}
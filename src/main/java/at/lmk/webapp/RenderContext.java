@@ -0,0 +1,38 @@
+package at.lmk.webapp;
+
+import javax.servlet.http.HttpServletRequest;
+
+import at.lmk.db.entities.User;
+
+/**
+ * Everything a page needs to know about the request it is rendered for. One
+ * servlet instance serves all requests at the same time, so this is passed
+ * through the render methods instead of being kept in fields of the page.
+ */
+public final class RenderContext {
+
+	private final HttpServletRequest request;
+	private final User user;
+
+	/**
+	 * @param request the request that is answered
+	 * @param user    the logged in user, null if nobody is logged in
+	 */
+	public RenderContext(HttpServletRequest request, User user) {
+		this.request = request;
+		this.user = user;
+	}
+
+	public HttpServletRequest getRequest() {
+		return request;
+	}
+
+	public User getUser() {
+		return user;
+	}
+
+	public String getParameter(String name) {
+		return request.getParameter(name);
+	}
+
+}
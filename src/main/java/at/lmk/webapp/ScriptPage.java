@@ -1,11 +1,22 @@
 package at.lmk.webapp;
 
+import at.lmk.webapp.PageTemplate.Hole;
 import j2html.tags.DomContent;
 
 public abstract class ScriptPage extends Page {
 
 	private static final long serialVersionUID = 4111385180079110376L;
 
-	public abstract DomContent getScript();
+	/**
+	 * Placeholder for the script returned by {@link #getScript(RenderContext)}
+	 */
+	protected static final Hole SCRIPT = new Hole("script");
+
+	public abstract DomContent getScript(RenderContext context);
+
+	@Override
+	protected DomContent fill(Hole hole, RenderContext context) {
+		return hole == SCRIPT ? getScript(context) : super.fill(hole, context);
+	}
 
 }
@@ -0,0 +1,44 @@
+package at.lmk.webapp;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import at.lmk.db.UnitOfWork;
+
+/**
+ * Runs every request in one {@link UnitOfWork}, so all database calls of a
+ * request share one session and the writes commit once. A failed call rolls
+ * the request back and is answered with 500. Mapped before the
+ * {@link AuthenticationFilter} in web.xml, so the login check is part of it.
+ */
+@WebFilter(filterName = "UnitOfWorkFilter", urlPatterns = "/*")
+public class UnitOfWorkFilter extends HttpFilter {
+
+	private static final long serialVersionUID = 3550711838407713547L;
+
+	@Override
+	protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+			try {
+				chain.doFilter(request, response);
+			} catch (RuntimeException e) {
+				unitOfWork.fail();
+				if (response.isCommitted())
+					throw e;
+				e.printStackTrace();
+				response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			} catch (IOException | ServletException | Error e) {
+				unitOfWork.fail();
+				throw e;
+			}
+		}
+	}
+
+}
@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
+import at.lmk.webapp.components.charts.ScriptTemplates;
 import j2html.tags.ContainerTag;
 import j2html.tags.DomContent;
 
@@ -14,6 +15,8 @@ public class Table extends Component {
 	private boolean showFooter;
 	private String[] header;
 	private Collection<String[]> collection;
+	private String url;
+	private boolean[] orderable;
 
 	public Table(String title, boolean showHeader, boolean showFooter, String[] header,
 			Collection<String[]> collection) {
@@ -24,6 +27,23 @@ public class Table extends Component {
 		this.collection = collection;
 	}
 
+	/**
+	 * A table without rows, DataTables loads them page by page from the url
+	 *
+	 * @param title
+	 * @param showHeader
+	 * @param showFooter
+	 * @param header
+	 * @param url        the server-side processing endpoint
+	 * @param orderable  whether the column at the same index can be sorted
+	 */
+	public Table(String title, boolean showHeader, boolean showFooter, String[] header, String url,
+			boolean[] orderable) {
+		this(title, showHeader, showFooter, header, new ArrayList<>());
+		this.url = url;
+		this.orderable = orderable;
+	}
+
 	@Override
 	public DomContent render() {
 		return div(div(i().withClass("fas fa-table mr-1")).withText(title).withClass("card-header"),
@@ -32,6 +52,23 @@ public class Table extends Component {
 								.withClass("card-body")).withClass("card mb-4");
 	}
 
+	/**
+	 * @return the script initializing server-side processing, null for a table
+	 *         with all rows rendered
+	 */
+	public DomContent getTableScript() {
+		if (url == null)
+			return null;
+		StringBuilder columns = new StringBuilder();
+		for (boolean o : orderable)
+			columns.append(columns.length() == 0 ? "" : ", ").append("{ orderable: ").append(o).append(" }");
+		String scriptContent = ScriptTemplates.TABLE_SERVER_SIDE;
+		scriptContent = scriptContent.replace("[URL]", url.replace("\\", "\\\\").replace("\"", "\\\""));
+		scriptContent = scriptContent.replace("[COLUMNS]", columns);
+
+		return script(rawHtml(scriptContent)).withType("text/javascript");
+	}
+
 	private DomContent[] getData(Collection<String[]> collection) {
 		List<DomContent> content = new ArrayList<>();
 		for (String[] line : collection)
@@ -26,4 +26,9 @@ public class ScriptTemplates {
 			+ "  type: 'pie',\r\n" + "  data: {\r\n" + "    labels: [[LABELS]],\r\n" + "    datasets: [{\r\n"
 			+ "      data: [[VALUES]],\r\n" + "      backgroundColor: ['#007bff', '#dc3545', '#ffc107', '#28a745'],\r\n"
 			+ "    }],\r\n" + "  },\r\n" + "});";
+
+	public static final String TABLE_SERVER_SIDE = "$(document).ready(function() {\r\n"
+			+ "  $(\"#dataTable\").DataTable({\r\n" + "    processing: true,\r\n" + "    serverSide: true,\r\n"
+			+ "    searchDelay: 400,\r\n" + "    ajax: \"[URL]\",\r\n" + "    columns: [[COLUMNS]]\r\n" + "  });\r\n"
+			+ "});\r\n";
 }
@@ -0,0 +1,48 @@
+package at.lmk.webapp.elements;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import at.lmk.db.HibernateUtil;
+import at.lmk.db.Order;
+
+/**
+ * Pages, sorts and searches the rows of a table in the database
+ */
+public class EntityDataSource<T> implements TableDataSource<T> {
+
+	private Class<T> type;
+
+	public EntityDataSource(Class<T> type) {
+		this.type = type;
+	}
+
+	@Override
+	public long count(String search, Collection<String> fields) {
+		return HibernateUtil.count(type, search, fields);
+	}
+
+	@Override
+	public List<T> fetch(int offset, int limit, Order order, String search, Collection<String> fields) {
+		return HibernateUtil.search(type, offset, limit, order, search, fields);
+	}
+
+	@Override
+	public CompletableFuture<Long> countAsync(String search, Collection<String> fields) {
+		return HibernateUtil.async().count(type, search, fields);
+	}
+
+	@Override
+	public CompletableFuture<List<T>> fetchAsync(int offset, int limit, Order order, String search,
+			Collection<String> fields) {
+		return HibernateUtil.async().search(type, offset, limit, order, search, fields);
+	}
+
+	@Override
+	public CompletableFuture<List<Object[]>> fetchColumnsAsync(List<String> columns, int offset, int limit,
+			Order order, String search, Collection<String> fields) {
+		return HibernateUtil.async().project(type, columns, offset, limit, order, search, fields);
+	}
+
+}
@@ -0,0 +1,16 @@
+package at.lmk.webapp.elements;
+
+/**
+ * A column whose content depends on nothing but the value of its field, so the
+ * rows of a server-side table can be loaded as projections of these fields
+ */
+public interface FieldTableColumn extends TableColumn {
+
+	/**
+	 * @param value the value of the field, for rows loaded without their entity
+	 * @return the same content {@link #getContent(Object)} returns for an entity
+	 *         holding the value
+	 */
+	public String getFieldContent(Object value);
+
+}
@@ -1,12 +1,36 @@
 package at.lmk.webapp.elements;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class ReflectedTableColumn implements TableColumn {
+public class ReflectedTableColumn implements FieldTableColumn {
+
+	/**
+	 * Compiled getters per class and field name. A getter is resolved once and
+	 * then shared by all columns and threads.
+	 */
+	private static final ClassValue<Map<String, MethodHandle>> ACCESSORS = new ClassValue<Map<String, MethodHandle>>() {
+		@Override
+		protected Map<String, MethodHandle> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	private static final MethodHandle EMPTY = MethodHandles
+			.dropArguments(MethodHandles.constant(String.class, ""), 0, Object.class);
 
 	private String title;
 	private String fieldName;
 
+	/**
+	 * Getter of the class seen last, rows of a table usually share one class
+	 */
+	private volatile Accessor last;
+
 	public ReflectedTableColumn(String title, String fieldName) {
 		this.title = title;
 		this.fieldName = fieldName;
@@ -17,18 +41,89 @@ public class ReflectedTableColumn implements TableColumn {
 		return title;
 	}
 
+	@Override
+	public String getFieldName() {
+		return fieldName;
+	}
+
 	@Override
 	public String getContent(Object o) {
-		Object content = "";
+		Accessor accessor = last;
+		if (accessor == null || accessor.type != o.getClass()) {
+			accessor = new Accessor(o.getClass(), ACCESSORS.get(o.getClass()).computeIfAbsent(fieldName,
+					name -> compile(o.getClass(), name)));
+			last = accessor;
+		}
 		try {
-			Field field = o.getClass().getDeclaredField(fieldName);
+			return (String) accessor.getter.invokeExact(o);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public String getFieldContent(Object value) {
+		return format(value);
+	}
+
+	/**
+	 * Content of a field value, boxed primitives result in the same content as
+	 * the String.valueOf used for unboxed ones
+	 */
+	private static String format(Object value) {
+		return value == null ? "" : value.toString();
+	}
+
+	/**
+	 * Builds a getter of type (Object)String for the field, primitives are
+	 * converted with the matching String.valueOf without boxing, objects with
+	 * {@link #format(Object)}
+	 */
+	private static MethodHandle compile(Class<?> type, String fieldName) {
+		try {
+			Field field = findField(type, fieldName);
 			field.setAccessible(true);
-			content = field.get(o);
-			field.setAccessible(false);
-		} catch (NoSuchFieldException | SecurityException | IllegalArgumentException | IllegalAccessException e) {
+			MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+			Class<?> fieldType = field.getType();
+			MethodHandle toString;
+			if (fieldType.isPrimitive()) {
+				Class<?> parameter = fieldType == byte.class || fieldType == short.class ? int.class : fieldType;
+				toString = MethodHandles.lookup().findStatic(String.class, "valueOf",
+						MethodType.methodType(String.class, parameter));
+			} else
+				toString = MethodHandles.lookup().findStatic(ReflectedTableColumn.class, "format",
+						MethodType.methodType(String.class, Object.class));
+			toString = toString.asType(MethodType.methodType(String.class, fieldType));
+			return MethodHandles.filterReturnValue(getter, toString)
+					.asType(MethodType.methodType(String.class, Object.class));
+		} catch (NoSuchFieldException | SecurityException | IllegalAccessException | NoSuchMethodException e) {
 			e.printStackTrace();
+			return EMPTY;
+		}
+	}
+
+	private static Field findField(Class<?> type, String fieldName) throws NoSuchFieldException {
+		for (Class<?> c = type; c != null; c = c.getSuperclass())
+			try {
+				return c.getDeclaredField(fieldName);
+			} catch (NoSuchFieldException e) {
+				continue;
+			}
+		throw new NoSuchFieldException(type.getName() + "." + fieldName);
+	}
+
+	private static class Accessor {
+
+		private final Class<?> type;
+		private final MethodHandle getter;
+
+		private Accessor(Class<?> type, MethodHandle getter) {
+			this.type = type;
+			this.getter = getter;
 		}
-		return content.toString();
+
 	}
 
 }
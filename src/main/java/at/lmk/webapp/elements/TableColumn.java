@@ -6,4 +6,12 @@ public interface TableColumn {
 
 	public String getContent(Object o);
 
+	/**
+	 * @return the entity field shown in this column, used for sorting and
+	 *         searching on the server, null if the column has no such field
+	 */
+	public default String getFieldName() {
+		return null;
+	}
+
 }
@@ -0,0 +1,61 @@
+package at.lmk.webapp.elements;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import at.lmk.db.Order;
+
+/**
+ * Loads the rows of a server-side table one page at a time
+ */
+public interface TableDataSource<T> {
+
+	/**
+	 * @param search the text to search for, null or empty for all rows
+	 * @param fields the fields that are searched
+	 * @return the number of rows matching the search
+	 */
+	public long count(String search, Collection<String> fields);
+
+	/**
+	 * @param offset index of the first row
+	 * @param limit  maximum number of rows
+	 * @param order  sort order, null for unsorted
+	 * @param search the text to search for, null or empty for all rows
+	 * @param fields the fields that are searched
+	 * @return one page of rows matching the search
+	 */
+	public List<T> fetch(int offset, int limit, Order order, String search, Collection<String> fields);
+
+	/**
+	 * {@link #count(String, Collection)} for sources that can load in parallel,
+	 * by default it counts before returning
+	 */
+	public default CompletableFuture<Long> countAsync(String search, Collection<String> fields) {
+		return CompletableFuture.completedFuture(count(search, fields));
+	}
+
+	/**
+	 * {@link #fetch(int, int, Order, String, Collection)} for sources that can
+	 * load in parallel, by default it fetches before returning
+	 */
+	public default CompletableFuture<List<T>> fetchAsync(int offset, int limit, Order order, String search,
+			Collection<String> fields) {
+		return CompletableFuture.completedFuture(fetch(offset, limit, order, search, fields));
+	}
+
+	/**
+	 * Like {@link #fetchAsync(int, int, Order, String, Collection)}, but loads
+	 * only the values of the given columns
+	 *
+	 * @param columns the fields to load
+	 * @return one array per row holding the values of the columns in order, null
+	 *         if the source can only load whole rows
+	 */
+	public default CompletableFuture<List<Object[]>> fetchColumnsAsync(List<String> columns, int offset, int limit,
+			Order order, String search, Collection<String> fields) {
+		return null;
+	}
+
+}
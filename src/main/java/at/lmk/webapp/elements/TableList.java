@@ -1,6 +1,8 @@
 package at.lmk.webapp.elements;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.function.Function;
 
 import j2html.tags.DomContent;
 
@@ -9,10 +11,29 @@ public interface TableList<T> {
 
 	public void setData(Collection<T> list);
 
+	/**
+	 * Switches the table to server-side processing. It is rendered without rows,
+	 * and DataTables loads one page at a time from the given url.
+	 *
+	 * @param source loads the rows
+	 * @param url    the endpoint answering with {@link #writeData}
+	 */
+	public void setSource(TableDataSource<T> source, String url);
+
 	public String[] getHeadings();
 
 	public Collection<String[]> getData();
 
+	/**
+	 * Answers a DataTables server-side processing request with one page of rows
+	 *
+	 * @param parameters the request parameters (draw, start, length, order,
+	 *                   search)
+	 * @param out        the JSON response is written to
+	 * @throws IOException if writing fails
+	 */
+	public void writeData(Function<String, String> parameters, Appendable out) throws IOException;
+
 	public String getTitle();
 
 	public boolean showHeader();
@@ -20,4 +41,9 @@ public interface TableList<T> {
 	public boolean showFooter();
 
 	public DomContent render();
+
+	/**
+	 * @return the script initializing DataTables, null if the table needs none
+	 */
+	public DomContent getScript();
 }
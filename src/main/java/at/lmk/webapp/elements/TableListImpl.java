@@ -1,21 +1,39 @@
 package at.lmk.webapp.elements;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
+import at.lmk.db.Order;
 import at.lmk.webapp.components.Table;
 import j2html.tags.DomContent;
+import j2html.utils.EscapeUtil;
 
 public class TableListImpl<T> implements TableList<T> {
 
+	private static final int DEFAULT_PAGE_LENGTH = 10;
+
+	/**
+	 * Upper bound for the rows of one server-side page, also used when DataTables
+	 * asks for all rows
+	 */
+	private static final int MAX_PAGE_LENGTH = 1000;
+
 	private String title;
 	private boolean showHeader;
 	private boolean showFooter;
-	private Map<String, TableColumn> columns = new HashMap<>();
+	private Map<String, TableColumn> columns = new LinkedHashMap<>();
 	private Collection<T> data;
+	private TableDataSource<T> source;
+	private String url;
 
 	public TableListImpl(String title) {
 		this(title, true, false);
@@ -37,6 +55,12 @@ public class TableListImpl<T> implements TableList<T> {
 		this.data = data;
 	}
 
+	@Override
+	public void setSource(TableDataSource<T> source, String url) {
+		this.source = source;
+		this.url = url;
+	}
+
 	@Override
 	public String[] getHeadings() {
 		return columns.keySet().toArray(new String[columns.size()]);
@@ -44,16 +68,138 @@ public class TableListImpl<T> implements TableList<T> {
 
 	@Override
 	public Collection<String[]> getData() {
+		return getData(data);
+	}
+
+	private List<String[]> getData(Collection<T> data) {
 		List<String[]> dataList = new ArrayList<>();
 		for (Object o : data) {
 			List<String> field = new ArrayList<>();
 			for (TableColumn c : columns.values())
 				field.add(c.getContent(o));
-			dataList.add(field.toArray(new String[dataList.size()]));
+			dataList.add(field.toArray(new String[field.size()]));
+		}
+		return dataList;
+	}
+
+	private static List<String[]> getColumnData(List<TableColumn> columns, List<Object[]> tuples) {
+		if (tuples == null)
+			return null;
+		List<String[]> dataList = new ArrayList<>(tuples.size());
+		for (Object[] tuple : tuples) {
+			String[] row = new String[columns.size()];
+			for (int i = 0; i < row.length; i++)
+				row[i] = ((FieldTableColumn) columns.get(i)).getFieldContent(tuple[i]);
+			dataList.add(row);
 		}
 		return dataList;
 	}
 
+	@Override
+	public void writeData(Function<String, String> parameters, Appendable out) throws IOException {
+		if (source == null)
+			throw new IllegalStateException("Table " + title + " has no server-side source");
+		List<TableColumn> columnList = new ArrayList<>(columns.values());
+		List<String> fields = new ArrayList<>();
+		boolean projectable = true;
+		for (TableColumn c : columnList) {
+			if (c.getFieldName() != null)
+				fields.add(c.getFieldName());
+			projectable &= c.getFieldName() != null && c instanceof FieldTableColumn;
+		}
+
+		int draw = parseInt(parameters.apply("draw"), 0);
+		int start = Math.max(0, parseInt(parameters.apply("start"), 0));
+		int length = parseInt(parameters.apply("length"), DEFAULT_PAGE_LENGTH);
+		if (length < 0 || length > MAX_PAGE_LENGTH)
+			length = MAX_PAGE_LENGTH;
+		String search = parameters.apply("search[value]");
+		Order order = null;
+		int orderColumn = parseInt(parameters.apply("order[0][column]"), -1);
+		if (orderColumn >= 0 && orderColumn < columnList.size()
+				&& columnList.get(orderColumn).getFieldName() != null) {
+			String field = columnList.get(orderColumn).getFieldName();
+			order = "desc".equals(parameters.apply("order[0][dir]")) ? Order.desc(field) : Order.asc(field);
+		}
+
+		// the counts and the page are independent and loaded in parallel
+		CompletableFuture<Long> totalCount = source.countAsync(null, fields);
+		CompletableFuture<Long> filteredCount = search == null || search.isEmpty() ? totalCount
+				: source.countAsync(search, fields);
+		// only the shown fields are loaded if every column is rendered from its field
+		CompletableFuture<List<Object[]>> tuples = projectable
+				? source.fetchColumnsAsync(fields, start, length, order, search, fields)
+				: null;
+		CompletableFuture<List<T>> page = tuples == null ? source.fetchAsync(start, length, order, search, fields)
+				: null;
+		long total;
+		long filtered;
+		List<String[]> rows;
+		try {
+			total = totalCount.join();
+			filtered = filteredCount.join();
+			if (tuples != null)
+				rows = getColumnData(columnList, tuples.join());
+			else {
+				List<T> entities = page.join();
+				rows = entities == null ? null : getData(entities);
+			}
+		} catch (CompletionException | CancellationException e) {
+			e.printStackTrace();
+			for (CompletableFuture<?> f : Arrays.asList(totalCount, filteredCount, tuples, page))
+				if (f != null)
+					f.cancel(true);
+			// shown by DataTables instead of the rows
+			out.append("{\"draw\":").append(String.valueOf(draw)).append(",\"error\":");
+			appendJsonString("Die Daten konnten nicht geladen werden.", out);
+			out.append('}');
+			return;
+		}
+
+		out.append("{\"draw\":").append(String.valueOf(draw));
+		out.append(",\"recordsTotal\":").append(String.valueOf(total));
+		out.append(",\"recordsFiltered\":").append(String.valueOf(filtered));
+		out.append(",\"data\":[");
+		if (rows != null) {
+			boolean firstRow = true;
+			for (String[] row : rows) {
+				out.append(firstRow ? "[" : ",[");
+				for (int i = 0; i < row.length; i++) {
+					if (i > 0)
+						out.append(',');
+					appendJsonString(EscapeUtil.escape(row[i]), out);
+				}
+				out.append(']');
+				firstRow = false;
+			}
+		}
+		out.append("]}");
+	}
+
+	private static int parseInt(String value, int defaultValue) {
+		if (value == null)
+			return defaultValue;
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static void appendJsonString(String value, Appendable out) throws IOException {
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				out.append('\\').append(c);
+			else if (c < 0x20)
+				out.append(String.format("\\u%04x", (int) c));
+			else
+				out.append(c);
+		}
+		out.append('"');
+	}
+
 	@Override
 	public String getTitle() {
 		return title;
@@ -71,7 +217,22 @@ public class TableListImpl<T> implements TableList<T> {
 
 	@Override
 	public DomContent render() {
-		return new Table(getTitle(), showHeader(), showFooter(), getHeadings(), getData()).render();
+		return createTable().render();
+	}
+
+	@Override
+	public DomContent getScript() {
+		return source == null ? null : createTable().getTableScript();
+	}
+
+	private Table createTable() {
+		if (source == null)
+			return new Table(getTitle(), showHeader(), showFooter(), getHeadings(), getData());
+		boolean[] orderable = new boolean[columns.size()];
+		int i = 0;
+		for (TableColumn c : columns.values())
+			orderable[i++] = c.getFieldName() != null;
+		return new Table(getTitle(), showHeader(), showFooter(), getHeadings(), url, orderable);
 	}
 
 }
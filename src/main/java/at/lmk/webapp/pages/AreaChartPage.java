@@ -4,6 +4,7 @@ import java.util.HashMap;
 
 import javax.servlet.annotation.WebServlet;
 
+import at.lmk.webapp.RenderContext;
 import at.lmk.webapp.ScriptPage;
 import at.lmk.webapp.components.charts.AreaChart;
 import j2html.tags.DomContent;
@@ -29,12 +30,12 @@ public class AreaChartPage extends ScriptPage {
 	}
 
 	@Override
-	public DomContent getContents() {
+	public DomContent getContents(RenderContext context) {
 		return chart.render();
 	}
 
 	@Override
-	public DomContent getScript() {
+	public DomContent getScript(RenderContext context) {
 		return chart.getChartScript();
 	}
 }
@@ -3,6 +3,7 @@ package at.lmk.webapp.pages;
 import javax.servlet.annotation.WebServlet;
 
 import at.lmk.webapp.Page;
+import at.lmk.webapp.RenderContext;
 import j2html.tags.DomContent;
 
 @WebServlet(urlPatterns = "/Index")
@@ -11,7 +12,7 @@ public class Index extends Page {
 	private static final long serialVersionUID = -17158504081538020L;
 
 	@Override
-	public DomContent getContents() {
+	public DomContent getContents(RenderContext context) {
 		return text("Hallo!");
 	}
 
@@ -4,8 +4,8 @@ import java.util.List;
 
 import javax.servlet.annotation.WebServlet;
 
-import at.lmk.db.SessionUtil;
 import at.lmk.webapp.EmptyPage;
+import at.lmk.webapp.RenderContext;
 import j2html.tags.DomContent;
 
 @WebServlet("/Login")
@@ -14,10 +14,8 @@ public class Login extends EmptyPage {
 	private static final long serialVersionUID = 3767267658630297614L;
 
 	@Override
-	protected void getPageContent(List<DomContent> content) {
-		String forward = request.getParameter("return");
-		if (Boolean.valueOf(request.getParameter("logout")))
-			SessionUtil.logout(request);
+	protected void getPageContent(List<DomContent> content, RenderContext context) {
+		String forward = context.getParameter("return");
 
 		content.add(div(div(i().withClass("fas fa-user")).withStyle("margin-top:50px"),
 				form(input().withType("text").withId("login").withName("login").withPlaceholder("Login"),
@@ -0,0 +1,28 @@
+package at.lmk.webapp.pages;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.annotation.WebServlet;
+
+import at.lmk.util.Metrics;
+import at.lmk.webapp.Page;
+import at.lmk.webapp.RenderContext;
+import at.lmk.webapp.components.Table;
+import j2html.tags.DomContent;
+
+@WebServlet("/Status")
+public class Status extends Page {
+
+	private static final long serialVersionUID = 4101622874316985309L;
+
+	@Override
+	public DomContent getContents(RenderContext context) {
+		List<String[]> rows = new ArrayList<>();
+		for (Map.Entry<String, Object> e : Metrics.snapshot().entrySet())
+			rows.add(new String[] { e.getKey(), String.valueOf(e.getValue()) });
+		return new Table("Metrics", true, false, new String[] { "Name", "Value" }, rows).render();
+	}
+
+}
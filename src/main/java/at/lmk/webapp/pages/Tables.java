@@ -2,27 +2,50 @@ package at.lmk.webapp.pages;
 
 import javax.servlet.annotation.WebServlet;
 
-import at.lmk.db.HibernateUtil;
 import at.lmk.db.entities.User;
-import at.lmk.webapp.Page;
+import at.lmk.webapp.RenderContext;
+import at.lmk.webapp.ScriptPage;
+import at.lmk.webapp.elements.EntityDataSource;
 import at.lmk.webapp.elements.ReflectedTableColumn;
+import at.lmk.webapp.elements.TableDataSource;
 import at.lmk.webapp.elements.TableList;
 import at.lmk.webapp.elements.TableListImpl;
 import j2html.tags.DomContent;
 
 @WebServlet("/Tables")
-public class Tables extends Page {
+public class Tables extends ScriptPage {
 
 	private static final long serialVersionUID = -5327064381221370972L;
 
-	@Override
-	public DomContent getContents() {
+	/**
+	 * The user table, its rows are loaded page by page from {@link TablesData}
+	 */
+	static TableList<User> createTable() {
+		return createTable(new EntityDataSource<>(User.class));
+	}
+
+	/**
+	 * The user table with its rows loaded from the given source
+	 *
+	 * @param source loads the users shown in the table
+	 * @return the table as it is shown on this page
+	 */
+	public static TableList<User> createTable(TableDataSource<User> source) {
 		TableList<User> tableList = new TableListImpl<>("User");
 		tableList.addColumn(new ReflectedTableColumn("E-Mail", "email"));
 		tableList.addColumn(new ReflectedTableColumn("Vorname", "firstname"));
 		tableList.addColumn(new ReflectedTableColumn("Nachname", "lastname"));
-		tableList.addColumn(new ReflectedTableColumn("Passwort", "password"));
-		tableList.setData(HibernateUtil.list(User.class));
-		return tableList.render();
+		tableList.setSource(source, "TablesData");
+		return tableList;
+	}
+
+	@Override
+	public DomContent getContents(RenderContext context) {
+		return createTable().render();
+	}
+
+	@Override
+	public DomContent getScript(RenderContext context) {
+		return createTable().getScript();
 	}
 }
@@ -0,0 +1,24 @@
+package at.lmk.webapp.pages;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.annotation.WebServlet;
+
+import at.lmk.webapp.JsonPage;
+import at.lmk.webapp.RenderContext;
+
+/**
+ * DataTables server-side processing endpoint of the {@link Tables} page
+ */
+@WebServlet("/TablesData")
+public class TablesData extends JsonPage {
+
+	private static final long serialVersionUID = -2516408409591862004L;
+
+	@Override
+	protected void write(RenderContext context, Writer out) throws IOException {
+		Tables.createTable().writeData(context::getParameter, out);
+	}
+
+}